@@ -0,0 +1,161 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* A bounded LIFO work stack for producers and consumers.
+   Consumers get the most recently pushed item first (it is the one most
+   likely still in cache). Unlike FixedStack a full stack never drops an
+   item: push waits for room and pop waits for an item.
+
+   push/pop (the IntStack methods) wait uninterruptibly; put/take are the
+   interruptible versions and offer/popInto have timeouts. With fair == true
+   waiting threads are served in arrival order (lower throughput).
+*/
+class BlockingStack implements BulkIntStack {
+  private final int stck[];
+  private int tos = -1;
+  private final ReentrantLock lock;
+  private final Condition notEmpty;
+  private final Condition notFull;
+
+  BlockingStack(int capacity) {
+    this(capacity, false);
+  }
+
+  BlockingStack(int capacity, boolean fair) {
+    if(capacity <= 0)
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    stck = new int[capacity];
+    lock = new ReentrantLock(fair);
+    notEmpty = lock.newCondition();
+    notFull = lock.newCondition();
+  }
+
+  // Push an item, waiting for room if the stack is full
+  public void push(int item) {
+    lock.lock();
+    try {
+      while(tos==stck.length-1) notFull.awaitUninterruptibly();
+      stck[++tos] = item;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Pop an item, waiting for one if the stack is empty
+  public int pop() {
+    lock.lock();
+    try {
+      while(tos < 0) notEmpty.awaitUninterruptibly();
+      int item = stck[tos--];
+      notFull.signal();
+      return item;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void put(int item) throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while(tos==stck.length-1) notFull.await();
+      stck[++tos] = item;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while(tos < 0) notEmpty.await();
+      int item = stck[tos--];
+      notFull.signal();
+      return item;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Push unless the stack stays full for the whole timeout
+  public boolean offer(int item, long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while(tos==stck.length-1) {
+        if(nanos <= 0) return false;
+        nanos = notFull.awaitNanos(nanos);
+      }
+      stck[++tos] = item;
+      notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Push all items, waiting for room as often as needed; wakes consumers
+  // once per chunk that fits instead of once per item
+  public void pushAll(int src[], int off, int len) {
+    lock.lock();
+    try {
+      while(len > 0) {
+        while(tos==stck.length-1) notFull.awaitUninterruptibly();
+        int n = Math.min(len, stck.length - 1 - tos);
+        System.arraycopy(src, off, stck, tos + 1, n);
+        tos += n;
+        off += n;
+        len -= n;
+        if(n==1) notEmpty.signal(); else notEmpty.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Drain up to len items without waiting; dst[off] gets the top item
+  public int popInto(int dst[], int off, int len) {
+    lock.lock();
+    try {
+      return drain(dst, off, len);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Wait up to timeout for at least one item, then drain up to len items
+  public int popInto(int dst[], int off, int len, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      while(tos < 0) {
+        if(nanos <= 0) return 0;
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      return drain(dst, off, len);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int size() {
+    lock.lock();
+    try {
+      return tos + 1;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // caller holds the lock
+  private int drain(int dst[], int off, int len) {
+    int n = Math.min(len, tos + 1);
+    for(int i=0; i<n; i++) dst[off + i] = stck[tos - i];
+    tos -= n;
+    if(n==1) notFull.signal(); else if(n > 1) notFull.signalAll();
+    return n;
+  }
+}
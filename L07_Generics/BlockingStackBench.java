@@ -0,0 +1,77 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/* Producer/consumer throughput of BlockingStack against a
+   LinkedBlockingDeque<Integer> used as a LIFO (putFirst/takeFirst).
+
+   java BlockingStackBench [producers] [consumers] [itemsPerProducer] [capacity]
+*/
+class BlockingStackBench {
+  interface Channel {
+    void put(int item) throws InterruptedException;
+    int take() throws InterruptedException;
+  }
+
+  public static void main(String args[]) throws InterruptedException {
+    int producers = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+    int consumers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+    int items = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+    int capacity = args.length > 3 ? Integer.parseInt(args[3]) : 1024;
+
+    for(int pass=0; pass<2; pass++) { // the first pass is warmup
+      BlockingStack stack = new BlockingStack(capacity);
+      BlockingStack fairStack = new BlockingStack(capacity, true);
+      LinkedBlockingDeque<Integer> deque = new LinkedBlockingDeque<>(capacity);
+
+      double a = run(new Channel() {
+        public void put(int item) throws InterruptedException { stack.put(item); }
+        public int take() throws InterruptedException { return stack.take(); }
+      }, producers, consumers, items);
+      double b = run(new Channel() {
+        public void put(int item) throws InterruptedException { fairStack.put(item); }
+        public int take() throws InterruptedException { return fairStack.take(); }
+      }, producers, consumers, items);
+      double c = run(new Channel() {
+        public void put(int item) throws InterruptedException { deque.putFirst(item); }
+        public int take() throws InterruptedException { return deque.takeFirst(); }
+      }, producers, consumers, items);
+      if(pass==0) continue;
+
+      System.out.printf("BlockingStack:              %8.2f Mitems/s%n", a);
+      System.out.printf("BlockingStack (fair):       %8.2f Mitems/s%n", b);
+      System.out.printf("LinkedBlockingDeque (LIFO): %8.2f Mitems/s%n", c);
+    }
+  }
+
+  // millions of items handed from producers to consumers per second
+  static double run(Channel ch, int producers, int consumers, int items)
+      throws InterruptedException {
+    long total = (long) producers * items;
+    CountDownLatch done = new CountDownLatch(producers + consumers);
+    long begin = System.nanoTime();
+    for(int p=0; p<producers; p++) {
+      new Thread(() -> {
+        try {
+          for(int i=0; i<items; i++) ch.put(i);
+        } catch(InterruptedException e) {
+          System.out.println("InterruptedException caught");
+        }
+        done.countDown();
+      }).start();
+    }
+    for(int c=0; c<consumers; c++) {
+      // spread the items over the consumers, the first one takes the remainder
+      long share = total / consumers + (c==0 ? total % consumers : 0);
+      new Thread(() -> {
+        try {
+          for(long i=0; i<share; i++) ch.take();
+        } catch(InterruptedException e) {
+          System.out.println("InterruptedException caught");
+        }
+        done.countDown();
+      }).start();
+    }
+    done.await();
+    return total / ((System.nanoTime() - begin) / 1000.0);
+  }
+}
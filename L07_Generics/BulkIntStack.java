@@ -0,0 +1,23 @@
+/* An IntStack that can also move many items per call.
+   When one call site sees many IntStack classes it becomes megamorphic
+   and every push/pop is a full interface dispatch. A bulk call pays that
+   dispatch once per batch; the loop runs inside the implementation,
+   where push/pop are monomorphic and can be inlined.
+
+   The defaults just loop over push/pop; implementations override them
+   with something cheaper where they can.
+*/
+interface BulkIntStack extends IntStack {
+  // Push src[off..off+len) in order, so src[off+len-1] ends up on top
+  default void pushAll(int src[], int off, int len) {
+    for(int i=0; i<len; i++) push(src[off + i]);
+  }
+
+  default void pushAll(int src[]) {
+    pushAll(src, 0, src.length);
+  }
+
+  // Pop up to len items into dst[off..]; dst[off] gets the top item.
+  // Returns how many items were popped.
+  int popInto(int dst[], int off, int len);
+}
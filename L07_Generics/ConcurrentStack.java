@@ -0,0 +1,116 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/* A lock-free, thread-safe IntStack.
+   The stack itself is a Treiber stack: a linked list whose head is
+   swapped with compareAndSet. When that CAS fails because of contention,
+   the thread tries the elimination array instead: a pusher parks its node
+   in a random slot for a short while, and a popper that finds it there
+   takes the node directly. Such a push/pop pair never touches the head.
+*/
+class ConcurrentStack implements BulkIntStack {
+  private static final class Node {
+    final int item;
+    Node next;
+
+    Node(int item) {
+      this.item = item;
+    }
+  }
+
+  private static final int SPINS = 64; // how long a pusher waits in a slot
+
+  private final AtomicReference<Node> head = new AtomicReference<>();
+  private final AtomicReferenceArray<Node> slots;
+
+  ConcurrentStack() {
+    this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+  }
+
+  // eliminationWidth is the number of slots in the elimination array
+  ConcurrentStack(int eliminationWidth) {
+    slots = new AtomicReferenceArray<>(Math.max(1, eliminationWidth));
+  }
+
+  // Push an item onto the stack
+  public void push(int item) {
+    Node node = new Node(item);
+    while(true) {
+      Node top = head.get();
+      node.next = top;
+      if(head.compareAndSet(top, node)) return;
+      if(tryEliminatePush(node)) return;
+    }
+  }
+
+  // Pop an item from the stack
+  public int pop() {
+    Node node = tryPop();
+    if(node==null) {
+      System.out.println("Stack underflow.");
+      return 0;
+    }
+    return node.item;
+  }
+
+  // Links the whole batch privately and publishes it with one CAS
+  public void pushAll(int src[], int off, int len) {
+    if(len <= 0) return;
+    Node bottom = new Node(src[off]);
+    Node top = bottom;
+    for(int i=1; i<len; i++) {
+      Node node = new Node(src[off + i]);
+      node.next = top;
+      top = node;
+    }
+    while(true) {
+      Node h = head.get();
+      bottom.next = h;
+      if(head.compareAndSet(h, top)) return;
+    }
+  }
+
+  // Stops early, without a message, when other threads empty the stack
+  public int popInto(int dst[], int off, int len) {
+    int n = 0;
+    Node node;
+    while(n < len && (node = tryPop())!=null) dst[off + n++] = node.item;
+    return n;
+  }
+
+  public boolean isEmpty() {
+    return head.get()==null;
+  }
+
+  // null when the stack is empty
+  private Node tryPop() {
+    while(true) {
+      Node top = head.get();
+      if(top==null) return null;
+      if(head.compareAndSet(top, top.next)) return top;
+      Node other = tryEliminatePop();
+      if(other!=null) return other;
+    }
+  }
+
+  // Offer node in a random slot; true if a popper took it
+  private boolean tryEliminatePush(Node node) {
+    int i = ThreadLocalRandom.current().nextInt(slots.length());
+    if(!slots.compareAndSet(i, null, node)) return false;
+    for(int spin=0; spin<SPINS; spin++) {
+      if(slots.get(i)!=node) return true;
+      Thread.onSpinWait();
+    }
+    // nobody came: withdraw the offer, unless a popper took it just now
+    return !slots.compareAndSet(i, node, null);
+  }
+
+  // Take a node offered by a pusher in a random slot, or null
+  private Node tryEliminatePop() {
+    int i = ThreadLocalRandom.current().nextInt(slots.length());
+    Node node = slots.get(i);
+    if(node!=null && slots.compareAndSet(i, node, null)) return node;
+    return null;
+  }
+}
@@ -0,0 +1,64 @@
+import java.util.concurrent.CountDownLatch;
+
+/* Throughput of ConcurrentStack against a DynStack guarded by
+   synchronized, for 1..N threads. Every thread does push/pop pairs,
+   so the stack never underflows.
+
+   java ConcurrentStackBench [maxThreads] [opsPerThread]
+*/
+class ConcurrentStackBench {
+  // The way we used DynStack from several threads so far
+  static class SynchronizedStack implements IntStack {
+    private final DynStack stack = new DynStack(16);
+
+    public synchronized void push(int item) {
+      stack.push(item);
+    }
+
+    public synchronized int pop() {
+      return stack.pop();
+    }
+  }
+
+  public static void main(String args[]) throws InterruptedException {
+    int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+                                     : Runtime.getRuntime().availableProcessors();
+    int ops = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+    System.out.printf("%8s %20s %20s%n", "threads", "synchronized Mops/s", "lock-free Mops/s");
+    for(int threads=1; ; threads=Math.min(threads * 2, maxThreads)) {
+      // first round warms up the JIT, the second one is reported
+      run(new SynchronizedStack(), threads, ops);
+      double sync = run(new SynchronizedStack(), threads, ops);
+      run(new ConcurrentStack(), threads, ops);
+      double lockFree = run(new ConcurrentStack(), threads, ops);
+      System.out.printf("%8d %20.2f %20.2f%n", threads, sync, lockFree);
+      if(threads>=maxThreads) break;
+    }
+  }
+
+  // returns millions of operations (push or pop) per second
+  static double run(IntStack stack, int threads, int ops) throws InterruptedException {
+    CountDownLatch start = new CountDownLatch(1);
+    Thread workers[] = new Thread[threads];
+    for(int t=0; t<threads; t++) {
+      workers[t] = new Thread(() -> {
+        try {
+          start.await();
+        } catch(InterruptedException e) {
+          return;
+        }
+        for(int i=0; i<ops; i++) {
+          stack.push(i);
+          stack.pop();
+        }
+      });
+      workers[t].start();
+    }
+    long begin = System.nanoTime();
+    start.countDown();
+    for(Thread w : workers) w.join();
+    long elapsed = System.nanoTime() - begin;
+    return 2.0 * ops * threads / elapsed * 1000.0;
+  }
+}
@@ -0,0 +1,163 @@
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/* An IntStack that keeps its items off-heap in direct ByteBuffer chunks.
+   Growing adds a new chunk; the items already pushed are never copied.
+   Call free() when done: direct memory is otherwise released only when
+   the GC happens to collect the buffers.
+*/
+class DirectStack implements BulkIntStack {
+  private static final int INT_BYTES = 4;
+
+  private final int chunkItems;    // items per chunk
+  private ByteBuffer chunks[];     // only the references live on the heap
+  private int chunkCount;          // chunks currently allocated
+  private long tos;                // index of the top item, -1 when empty
+  private boolean freed;
+
+  // chunkItems items are allocated at a time (chunkItems * 4 bytes off-heap)
+  DirectStack(int chunkItems) {
+    // one chunk is one direct buffer, so its size in bytes must fit in an int
+    if(chunkItems <= 0 || chunkItems > Integer.MAX_VALUE / INT_BYTES)
+      throw new IllegalArgumentException("chunkItems must be in 1.." + Integer.MAX_VALUE / INT_BYTES
+                                         + ": " + chunkItems);
+    this.chunkItems = chunkItems;
+    chunks = new ByteBuffer[8];
+    tos = -1;
+  }
+
+  // Push an item onto the stack
+  public void push(int item) {
+    checkNotFreed();
+    long next = tos + 1;
+    int chunk = (int) (next / chunkItems);
+    if(chunk==chunkCount) addChunk();
+    chunks[chunk].putInt((int) (next % chunkItems) * INT_BYTES, item);
+    tos = next;
+  }
+
+  // Pop an item from the stack
+  public int pop() {
+    checkNotFreed();
+    if(tos < 0) {
+      System.out.println("Stack underflow.");
+      return 0;
+    }
+    int item = chunks[(int) (tos / chunkItems)].getInt((int) (tos % chunkItems) * INT_BYTES);
+    tos--;
+    return item;
+  }
+
+  // One bulk get per chunk; the run comes out bottom first, so reverse it
+  public int popInto(int dst[], int off, int len) {
+    checkNotFreed();
+    int n = (int) Math.min(len, size());
+    for(int left=n; left > 0; ) {
+      int top = (int) (tos % chunkItems);
+      int m = Math.min(left, top + 1);
+      chunks[(int) (tos / chunkItems)].asIntBuffer().get(top - m + 1, dst, off, m);
+      for(int i=off, j=off+m-1; i<j; i++, j--) {
+        int t = dst[i]; dst[i] = dst[j]; dst[j] = t;
+      }
+      tos -= m;
+      off += m;
+      left -= m;
+    }
+    return n;
+  }
+
+  public long size() {
+    return tos + 1;
+  }
+
+  // Off-heap footprint: chunks, bytes reserved and bytes holding items
+  public Stats stats() {
+    long reserved = (long) chunkCount * chunkItems * INT_BYTES;
+    return new Stats(chunkCount, reserved, size() * INT_BYTES);
+  }
+
+  // Release all off-heap memory now. The stack cannot be used afterwards.
+  public void free() {
+    if(freed) return;
+    for(int i=0; i<chunkCount; i++) {
+      release(chunks[i]);
+      chunks[i] = null;
+    }
+    chunkCount = 0;
+    tos = -1;
+    freed = true;
+  }
+
+  private void addChunk() {
+    if(chunkCount==chunks.length)
+      chunks = java.util.Arrays.copyOf(chunks, chunks.length * 2);
+    chunks[chunkCount++] = ByteBuffer.allocateDirect(chunkItems * INT_BYTES)
+                                     .order(ByteOrder.nativeOrder());
+  }
+
+  private void checkNotFreed() {
+    if(freed) throw new IllegalStateException("DirectStack has been freed");
+  }
+
+  static class Stats {
+    final int chunks;
+    final long reservedBytes;
+    final long usedBytes;
+
+    Stats(int chunks, long reservedBytes, long usedBytes) {
+      this.chunks = chunks;
+      this.reservedBytes = reservedBytes;
+      this.usedBytes = usedBytes;
+    }
+
+    public String toString() {
+      return "chunks=" + chunks + ", reserved=" + reservedBytes + "B, used=" + usedBytes + "B";
+    }
+  }
+
+  // Unsafe.invokeCleaner frees a direct buffer right away (jdk.unsupported).
+  // If it is not available the buffer is simply left to the GC.
+  private static final Object UNSAFE;
+  private static final java.lang.reflect.Method INVOKE_CLEANER;
+  static {
+    Object unsafe = null;
+    java.lang.reflect.Method m = null;
+    try {
+      Class<?> c = Class.forName("sun.misc.Unsafe");
+      Field f = c.getDeclaredField("theUnsafe");
+      f.setAccessible(true);
+      unsafe = f.get(null);
+      m = c.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch(ReflectiveOperationException | RuntimeException e) {
+      unsafe = null;
+      m = null;
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = m;
+  }
+
+  private static void release(ByteBuffer buf) {
+    if(INVOKE_CLEANER==null) return;
+    try {
+      INVOKE_CLEANER.invoke(UNSAFE, buf);
+    } catch(ReflectiveOperationException e) {
+      // fall back to GC-driven release
+    }
+  }
+}
+
+class DirectStackDemo {
+  public static void main(String args[]) {
+    DirectStack stack = new DirectStack(1 << 20); // 4 MB per chunk
+    for(int i=0; i<5_000_000; i++) stack.push(i);
+    System.out.println("After push: " + stack.stats());
+
+    long sum = 0;
+    for(int i=0; i<5_000_000; i++) sum += stack.pop();
+    System.out.println("Sum of popped values: " + sum);
+
+    stack.free();
+    System.out.println("After free: " + stack.stats());
+  }
+}
@@ -0,0 +1,161 @@
+/* Cost of IntStack dispatch at a monomorphic, bimorphic and megamorphic
+   call site, and how much of it the bulk API (BulkIntStack) wins back.
+
+   IFTest3 makes one interface reference switch between DynStack and
+   FixedStack: HotSpot inlines both behind a type check (bimorphic). With
+   three or more receiver classes the site becomes megamorphic and every
+   call goes through the itable. Each mode below has its own loop method
+   so the profiles of the call sites do not pollute each other.
+
+   java DispatchBench [itemsPerStack] [rounds]
+*/
+class DispatchBench {
+  static final int STACKS = 8;   // stacks per round, receivers alternate
+  static volatile long sink;
+
+  public static void main(String args[]) {
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+    IntStack mono[] = stacks(n, 1);
+    IntStack bi[] = stacks(n, 2);
+    IntStack mega[] = stacks(n, 4);
+    BulkIntStack bulk[] = stacks(n, 4); // same classes as mega, so only the call granularity differs
+    int buf[] = new int[n];
+    for(int i=0; i<n; i++) buf[i] = i;
+
+    for(int pass=0; pass<2; pass++) { // the first pass is warmup
+      long t0 = System.nanoTime();
+      for(int r=0; r<rounds; r++) runMono(mono, n);
+      long t1 = System.nanoTime();
+      for(int r=0; r<rounds; r++) runBi(bi, n);
+      long t2 = System.nanoTime();
+      for(int r=0; r<rounds; r++) runMega(mega, n);
+      long t3 = System.nanoTime();
+      for(int r=0; r<rounds; r++) runBulk(bulk, buf, n);
+      long t4 = System.nanoTime();
+      if(pass==0) continue;
+
+      double ops = 2.0 * n * STACKS * rounds;
+      System.out.printf("monomorphic  (1 class):  %6.2f ns/op%n", (t1 - t0) / ops);
+      System.out.printf("bimorphic    (2 classes): %6.2f ns/op%n", (t2 - t1) / ops);
+      System.out.printf("megamorphic  (4 classes): %6.2f ns/op%n", (t3 - t2) / ops);
+      System.out.printf("megamorphic, bulk calls:  %6.2f ns/op%n", (t4 - t3) / ops);
+    }
+  }
+
+  // STACKS stacks cycling through the first 'kinds' implementations.
+  // Every row uses these classes, so the bulk row differs from the
+  // megamorphic one only in how many items move per call.
+  static BulkIntStack[] stacks(int n, int kinds) {
+    BulkIntStack s[] = new BulkIntStack[STACKS];
+    for(int i=0; i<STACKS; i++) {
+      switch(i % kinds) {
+        case 0:  s[i] = new BulkDynStack(n); break;
+        case 1:  s[i] = new BulkFixedStack(n); break;
+        case 2:  s[i] = new IntArrayStack(n, true); break;
+        default: s[i] = new SegmentedStack(1024); break;
+      }
+    }
+    return s;
+  }
+
+  // DynStack with the bulk API. Its tos is private, so the adapter keeps
+  // its own count. pushAll/popInto are overridden here, not inherited from
+  // BulkIntStack, so their push/pop calls stay monomorphic.
+  static class BulkDynStack extends DynStack implements BulkIntStack {
+    private int count;
+
+    BulkDynStack(int size) {
+      super(size);
+    }
+
+    public void push(int item) {
+      super.push(item);
+      count++;
+    }
+
+    public int pop() {
+      if(count > 0) count--;
+      return super.pop();
+    }
+
+    public void pushAll(int src[], int off, int len) {
+      for(int i=0; i<len; i++) push(src[off + i]);
+    }
+
+    public int popInto(int dst[], int off, int len) {
+      int k = Math.min(len, count);
+      for(int i=0; i<k; i++) dst[off + i] = pop();
+      return k;
+    }
+  }
+
+  // FixedStack with the bulk API; a push onto a full stack is not counted
+  static class BulkFixedStack extends FixedStack implements BulkIntStack {
+    private final int capacity;
+    private int count;
+
+    BulkFixedStack(int size) {
+      super(size);
+      capacity = size;
+    }
+
+    public void push(int item) {
+      if(count < capacity) count++;
+      super.push(item);
+    }
+
+    public int pop() {
+      if(count > 0) count--;
+      return super.pop();
+    }
+
+    public void pushAll(int src[], int off, int len) {
+      for(int i=0; i<len; i++) push(src[off + i]);
+    }
+
+    public int popInto(int dst[], int off, int len) {
+      int k = Math.min(len, count);
+      for(int i=0; i<k; i++) dst[off + i] = pop();
+      return k;
+    }
+  }
+
+  static void runMono(IntStack s[], int n) {
+    long sum = 0;
+    for(IntStack st : s) {
+      for(int i=0; i<n; i++) st.push(i);
+      for(int i=0; i<n; i++) sum += st.pop();
+    }
+    sink += sum;
+  }
+
+  static void runBi(IntStack s[], int n) {
+    long sum = 0;
+    for(IntStack st : s) {
+      for(int i=0; i<n; i++) st.push(i);
+      for(int i=0; i<n; i++) sum += st.pop();
+    }
+    sink += sum;
+  }
+
+  static void runMega(IntStack s[], int n) {
+    long sum = 0;
+    for(IntStack st : s) {
+      for(int i=0; i<n; i++) st.push(i);
+      for(int i=0; i<n; i++) sum += st.pop();
+    }
+    sink += sum;
+  }
+
+  static void runBulk(BulkIntStack s[], int buf[], int n) {
+    long sum = 0;
+    for(BulkIntStack st : s) {
+      st.pushAll(buf, 0, n);
+      int got = st.popInto(buf, 0, n);
+      sum += got;
+    }
+    sink += sum;
+  }
+}
@@ -0,0 +1,87 @@
+// GENERATED by PrimitiveGen from Deque.tmpl -- do not edit by hand.
+// A growable double-ended queue of double values on a circular primitive array.
+// Capacity is always a power of two so wrapping is a mask, not a division.
+class DoubleArrayDeque {
+  private double data[];
+  private int head; // index of the first item
+  private int size;
+
+  DoubleArrayDeque(int capacity) {
+    data = new double[Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1)];
+  }
+
+  public void addFirst(double value) {
+    if(size==data.length) grow();
+    head = (head - 1) & (data.length - 1);
+    data[head] = value;
+    size++;
+  }
+
+  public void addLast(double value) {
+    if(size==data.length) grow();
+    data[(head + size) & (data.length - 1)] = value;
+    size++;
+  }
+
+  public double pollFirst() {
+    if(size==0) {
+      System.out.println("Deque underflow.");
+      return 0;
+    }
+    double value = data[head];
+    head = (head + 1) & (data.length - 1);
+    size--;
+    return value;
+  }
+
+  public double pollLast() {
+    if(size==0) {
+      System.out.println("Deque underflow.");
+      return 0;
+    }
+    size--;
+    return data[(head + size) & (data.length - 1)];
+  }
+
+  // Stack view: push/pop work on the front, like ArrayDeque
+  public void push(double value) {
+    addFirst(value);
+  }
+
+  public double pop() {
+    return pollFirst();
+  }
+
+  // Push every item of src in order, so src[src.length-1] ends up first
+  public void pushAll(double src[]) {
+    for(int i=0; i<src.length; i++) addFirst(src[i]);
+  }
+
+  // Pop up to len items from the front into dst[off..]; returns the count popped
+  public int popInto(double dst[], int off, int len) {
+    int n = Math.min(len, size);
+    int mask = data.length - 1;
+    for(int i=0; i<n; i++) dst[off + i] = data[(head + i) & mask];
+    head = (head + n) & mask;
+    size -= n;
+    return n;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size==0;
+  }
+
+  // double the storage and unwrap the items to the start of the new array
+  private void grow() {
+    double temp[] = new double[data.length * 2];
+    int firstPart = Math.min(size, data.length - head);
+    System.arraycopy(data, head, temp, 0, firstPart);
+    System.arraycopy(data, 0, temp, firstPart, size - firstPart);
+    data = temp;
+    head = 0;
+  }
+}
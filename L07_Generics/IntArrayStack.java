@@ -0,0 +1,80 @@
+// GENERATED by PrimitiveGen from Stack.tmpl -- do not edit by hand.
+// A int stack that keeps its items in a primitive array (no boxing).
+// growable == false behaves like FixedStack, growable == true like DynStack.
+class IntArrayStack implements BulkIntStack {
+  private int stck[];
+  private int tos;
+  private final boolean growable;
+
+  // allocate and initialize stack
+  IntArrayStack(int size, boolean growable) {
+    stck = new int[Math.max(size, 1)];
+    tos = -1;
+    this.growable = growable;
+  }
+
+  // Push an item onto the stack
+  public void push(int item) {
+    if(tos==stck.length-1) {
+      if(!growable) {
+        System.out.println("Stack is full.");
+        return;
+      }
+      grow(stck.length + 1);
+    }
+    stck[++tos] = item;
+  }
+
+  // Pop an item from the stack
+  public int pop() {
+    if(tos < 0) {
+      System.out.println("Stack underflow.");
+      return 0;
+    }
+    else
+      return stck[tos--];
+  }
+
+  // Push every item of src in order; a fixed stack keeps what fits
+  public void pushAll(int src[]) {
+    pushAll(src, 0, src.length);
+  }
+
+  public void pushAll(int src[], int off, int len) {
+    int n = len;
+    if(tos + 1 + n > stck.length) {
+      if(growable)
+        grow(tos + 1 + n);
+      else {
+        n = stck.length - tos - 1;
+        System.out.println("Stack is full.");
+      }
+    }
+    System.arraycopy(src, off, stck, tos + 1, n);
+    tos += n;
+  }
+
+  // Pop up to len items into dst[off..]; dst[off] gets the top item.
+  // Returns how many items were popped.
+  public int popInto(int dst[], int off, int len) {
+    int n = Math.min(len, tos + 1);
+    for(int i=0; i<n; i++) dst[off + i] = stck[tos - i];
+    tos -= n;
+    return n;
+  }
+
+  public int size() {
+    return tos + 1;
+  }
+
+  public boolean isEmpty() {
+    return tos < 0;
+  }
+
+  // double the storage until it holds at least minCapacity items
+  private void grow(int minCapacity) {
+    int len = stck.length;
+    while(len < minCapacity) len *= 2;
+    stck = java.util.Arrays.copyOf(stck, len);
+  }
+}
@@ -0,0 +1,75 @@
+// GENERATED by PrimitiveGen from List.tmpl -- do not edit by hand.
+// A growable list of long values backed by a primitive array (no boxing).
+class LongArrayList {
+  private long data[];
+  private int size;
+
+  LongArrayList(int capacity) {
+    data = new long[Math.max(capacity, 1)];
+  }
+
+  public void add(long value) {
+    if(size==data.length) grow(size + 1);
+    data[size++] = value;
+  }
+
+  public void addAll(long src[]) {
+    addAll(src, 0, src.length);
+  }
+
+  public void addAll(long src[], int off, int len) {
+    if(size + len > data.length) grow(size + len);
+    System.arraycopy(src, off, data, size, len);
+    size += len;
+  }
+
+  public long get(int index) {
+    checkIndex(index);
+    return data[index];
+  }
+
+  public long set(int index, long value) {
+    checkIndex(index);
+    long old = data[index];
+    data[index] = value;
+    return old;
+  }
+
+  public long removeAt(int index) {
+    checkIndex(index);
+    long old = data[index];
+    System.arraycopy(data, index + 1, data, index, size - index - 1);
+    size--;
+    return old;
+  }
+
+  // Copy up to len items starting at from into dst[off..]; returns the count copied
+  public int copyInto(int from, long dst[], int off, int len) {
+    int n = Math.max(0, Math.min(len, size - from));
+    System.arraycopy(data, from, dst, off, n);
+    return n;
+  }
+
+  public long[] toArray() {
+    return java.util.Arrays.copyOf(data, size);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  private void checkIndex(int index) {
+    if(index < 0 || index >= size)
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+  }
+
+  private void grow(int minCapacity) {
+    int len = data.length;
+    while(len < minCapacity) len *= 2;
+    data = java.util.Arrays.copyOf(data, len);
+  }
+}
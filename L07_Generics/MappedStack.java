@@ -0,0 +1,192 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/* A persistent IntStack kept in a memory-mapped file.
+
+   File layout:
+     header (32 bytes): magic, version, items per segment, tos
+     segments:          items per segment * 4 bytes each
+
+   tos plays the same role as in FixedStack (index of the top item, -1 if
+   empty). Opening an existing file reads only the header, so it takes the
+   same time whatever the depth of the stack; segments are mapped lazily
+   when they are first touched.
+
+   The item is always stored before tos. What survives a crash depends on
+   the SyncPolicy:
+     NEVER     a process crash loses nothing (the pages live in the OS
+               cache); after power loss the OS may have written the pages
+               back in any order, so tos can point past items that never
+               reached the disk.
+     EVERY_OP  the item's page is forced before tos is written and the
+               header is forced after, so after power loss the stack is in
+               the state before or after the last operation.
+     EVERY_N   no stronger than NEVER: the OS may write the header back
+               with a newer tos at any time between syncs, so after power
+               loss tos can still point past items that never reached the
+               disk. Only until the next push or pop after a sync() is
+               the stack known to be on disk.
+
+   Opening a file checks the header (segment size, and tos against the
+   file length) and throws IOException if it cannot be right.
+*/
+class MappedStack implements IntStack, Closeable {
+  enum SyncPolicy {
+    NEVER,     // leave it to the OS (survives a process crash, not power loss)
+    EVERY_OP,  // force the item, then the header, on each push/pop
+    EVERY_N    // force after every syncInterval operations (no stronger than NEVER on power loss)
+  }
+
+  private static final int MAGIC = 0x4B545349; // "ISTK"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 32;
+  private static final int TOS_OFFSET = 16;
+  private static final int MAX_SEGMENT_ITEMS = Integer.MAX_VALUE / 4;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer header;
+  private final int segmentItems;
+  private final SyncPolicy policy;
+  private final int syncInterval;
+  private MappedByteBuffer segments[] = new MappedByteBuffer[16];
+  private long tos;
+  private int unsynced;
+
+  // open or create with 1M items per segment and no explicit syncing
+  MappedStack(Path file) throws IOException {
+    this(file, 1 << 20, SyncPolicy.NEVER, 0);
+  }
+
+  // segmentItems is used only when the file is created
+  MappedStack(Path file, int segmentItems, SyncPolicy policy, int syncInterval) throws IOException {
+    if(!validSegment(segmentItems))
+      throw new IllegalArgumentException("segmentItems must be in 1.." + MAX_SEGMENT_ITEMS + ": " + segmentItems);
+    if(policy==SyncPolicy.EVERY_N && syncInterval <= 0)
+      throw new IllegalArgumentException("syncInterval must be positive for EVERY_N: " + syncInterval);
+    this.policy = policy;
+    this.syncInterval = syncInterval;
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                               StandardOpenOption.WRITE);
+    boolean created = channel.size()==0;
+    header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+    if(created) {
+      header.putInt(0, MAGIC);
+      header.putInt(4, VERSION);
+      header.putInt(8, segmentItems);
+      header.putLong(TOS_OFFSET, -1);
+      header.force();
+      this.segmentItems = segmentItems;
+      tos = -1;
+    }
+    else {
+      if(header.getInt(0)!=MAGIC || header.getInt(4)!=VERSION) {
+        channel.close();
+        throw new IOException("Not a MappedStack file: " + file);
+      }
+      this.segmentItems = header.getInt(8);
+      tos = header.getLong(TOS_OFFSET);
+      // segments are mapped whole, so every item up to tos lies inside the file
+      if(!validSegment(this.segmentItems) || tos < -1 || tos + 1 > (channel.size() - HEADER_BYTES) / 4) {
+        channel.close();
+        throw new IOException("Damaged MappedStack header in " + file + ": segmentItems "
+                              + this.segmentItems + ", tos " + tos);
+      }
+    }
+  }
+
+  // a segment is mapped as one buffer, so its bytes must fit in an int
+  private static boolean validSegment(int items) {
+    return items > 0 && items <= MAX_SEGMENT_ITEMS;
+  }
+
+  // Push an item onto the stack
+  public void push(int item) {
+    long next = tos + 1;
+    MappedByteBuffer seg = segment((int) (next / segmentItems));
+    int off = (int) (next % segmentItems) * 4;
+    seg.putInt(off, item);
+    // on disk before tos names it; the OS may write pages back in any order
+    if(policy==SyncPolicy.EVERY_OP) seg.force(off, 4);
+    tos = next;
+    header.putLong(TOS_OFFSET, tos);
+    afterWrite();
+  }
+
+  // Pop an item from the stack
+  public int pop() {
+    if(tos < 0) {
+      System.out.println("Stack underflow.");
+      return 0;
+    }
+    int item = segment((int) (tos / segmentItems)).getInt((int) (tos % segmentItems) * 4);
+    tos--;
+    header.putLong(TOS_OFFSET, tos);
+    afterWrite();
+    return item;
+  }
+
+  public long size() {
+    return tos + 1;
+  }
+
+  // Force every mapped segment and the header to disk
+  public void sync() {
+    for(MappedByteBuffer seg : segments)
+      if(seg!=null) seg.force();
+    header.force();
+    unsynced = 0;
+  }
+
+  public void close() throws IOException {
+    if(policy!=SyncPolicy.NEVER) sync();
+    channel.close();
+  }
+
+  private void afterWrite() {
+    switch(policy) {
+      case EVERY_OP:
+        header.force();
+        break;
+      case EVERY_N:
+        if(++unsynced >= syncInterval) sync();
+        break;
+      default:
+        break;
+    }
+  }
+
+  // map segment k on first use; mapping past the end extends the file
+  private MappedByteBuffer segment(int k) {
+    if(k >= segments.length)
+      segments = java.util.Arrays.copyOf(segments, Math.max(segments.length * 2, k + 1));
+    MappedByteBuffer seg = segments[k];
+    if(seg==null) {
+      long bytes = (long) segmentItems * 4;
+      try {
+        seg = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + k * bytes, bytes);
+      } catch(IOException e) {
+        throw new java.io.UncheckedIOException("Cannot map segment " + k, e);
+      }
+      segments[k] = seg;
+    }
+    return seg;
+  }
+}
+
+class MappedStackDemo {
+  public static void main(String args[]) throws IOException {
+    Path file = Paths.get(args.length > 0 ? args[0] : "undo.stack");
+    try(MappedStack stack = new MappedStack(file, 1 << 16, MappedStack.SyncPolicy.EVERY_N, 1000)) {
+      System.out.println("Reopened with " + stack.size() + " items");
+      // every run adds ten items on top of what the previous run left
+      for(int i=0; i<10; i++) stack.push((int) stack.size());
+      System.out.println("Top item: " + stack.pop());
+      stack.push((int) stack.size());
+    }
+  }
+}
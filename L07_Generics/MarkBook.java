@@ -0,0 +1,323 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/* Columnar store for many marks.
+   Mark<T extends Number> keeps a boxed value per object; here all marks
+   sit in one double[] column and the rounded marks in an int[] column,
+   so bulk statistics run over primitive arrays. Large columns are split
+   into fork-join tasks; each leaf is a plain counted loop the JIT can
+   vectorize.
+*/
+public class MarkBook {
+  // below this many marks a task does the work itself instead of splitting
+  static final int THRESHOLD = 1 << 16;
+
+  private double marks[];
+  private int rounded[]; // Math.round(mark.floatValue()), built on demand
+  private int size;
+
+  public MarkBook(int capacity) {
+    marks = new double[Math.max(capacity, 1)];
+  }
+
+  // Marks must be finite: infinities round to Integer.MIN/MAX_VALUE and NaN
+  // has no rank, which breaks the grouping and percentiles below
+  public void add(double mark) {
+    checkFinite(mark);
+    if(size==marks.length) marks = Arrays.copyOf(marks, size * 2);
+    marks[size++] = mark;
+    rounded = null;
+  }
+
+  public void addAll(double src[]) {
+    for(double m : src) checkFinite(m);
+    if(size + src.length > marks.length)
+      marks = Arrays.copyOf(marks, Math.max(size * 2, size + src.length));
+    System.arraycopy(src, 0, marks, size, src.length);
+    size += src.length;
+    rounded = null;
+  }
+
+  private static void checkFinite(double mark) {
+    if(!Double.isFinite(mark)) throw new IllegalArgumentException("mark must be finite: " + mark);
+  }
+
+  public void add(Mark<?> mark) {
+    add(mark.getMark().doubleValue());
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public double getMark(int i) {
+    if(i < 0 || i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    return marks[i];
+  }
+
+  // Same value as new Mark<>(getMark(i)).roundMark()
+  public int roundMark(int i) {
+    return roundedColumn()[i];
+  }
+
+  // Same result as Mark.sameAny for marks i and j
+  public boolean sameAny(int i, int j) {
+    int r[] = roundedColumn();
+    return r[i]==r[j];
+  }
+
+  // Every rounded mark; a copy, so writing to it cannot corrupt the cache
+  public int[] roundAll() {
+    return roundedColumn().clone();
+  }
+
+  // Rounded column, computed once in parallel and cached until the next add
+  private int[] roundedColumn() {
+    if(rounded==null) {
+      int r[] = new int[size];
+      ForkJoinPool.commonPool().invoke(new RoundTask(marks, r, 0, size));
+      rounded = r;
+    }
+    return rounded;
+  }
+
+  // sameAny grouping: values[k] (ascending) is a rounded mark and counts[k]
+  // the number of marks that round to it; returned as { values, counts }.
+  // Ranges narrower than THRESHOLD and the number of marks are counted
+  // densely in parallel, the rest by sorting.
+  public int[][] sameAnyGroups() {
+    int r[] = roundedColumn();
+    if(size==0) return new int[][] { new int[0], new int[0] };
+    long minMax = ForkJoinPool.commonPool().invoke(new MinMaxTask(r, 0, size));
+    int min = (int) (minMax >> 32), max = (int) minMax;
+    long width = (long) max - min + 1;
+    int values[] = new int[16], counts[] = new int[16];
+    int n = 0;
+    if(width <= THRESHOLD && width <= size) {
+      // every leaf allocates width counters, however few marks it covers;
+      // a leaf covers size marks or at least THRESHOLD/2 of them, so with
+      // width <= min(size, THRESHOLD) that is at most two counters per mark
+      int dense[] = ForkJoinPool.commonPool().invoke(new CountTask(r, 0, size, min, (int) width));
+      for(int k=0; k<dense.length; k++) {
+        if(dense[k]==0) continue;
+        if(n==values.length) { values = Arrays.copyOf(values, n * 2); counts = Arrays.copyOf(counts, n * 2); }
+        values[n] = min + k;
+        counts[n++] = dense[k];
+      }
+    } else {
+      int sorted[] = Arrays.copyOf(r, size);
+      Arrays.parallelSort(sorted);
+      for(int i=0; i<size; i++) {
+        if(n > 0 && values[n-1]==sorted[i]) { counts[n-1]++; continue; }
+        if(n==values.length) { values = Arrays.copyOf(values, n * 2); counts = Arrays.copyOf(counts, n * 2); }
+        values[n] = sorted[i];
+        counts[n++] = 1;
+      }
+    }
+    return new int[][] { Arrays.copyOf(values, n), Arrays.copyOf(counts, n) };
+  }
+
+  // Dense form of sameAnyGroups(): counts[k] is the number of marks that round
+  // to minRounded() + k. Refused when the rounded marks span much more than
+  // the number of marks; use sameAnyGroups() for such data.
+  public int[] sameAnyCounts() {
+    int g[][] = sameAnyGroups();
+    int n = g[0].length;
+    if(n==0) return new int[0];
+    long width = (long) g[0][n-1] - g[0][0] + 1;
+    if(width > Math.max(4L * size, THRESHOLD))
+      throw new IllegalStateException("rounded marks span " + width + " values; use sameAnyGroups()");
+    int counts[] = new int[(int) width];
+    for(int k=0; k<n; k++) counts[g[0][k] - g[0][0]] = g[1][k];
+    return counts;
+  }
+
+  public int minRounded() {
+    if(size==0) throw new IllegalStateException("MarkBook is empty");
+    return (int) (ForkJoinPool.commonPool().invoke(new MinMaxTask(roundedColumn(), 0, size)) >> 32);
+  }
+
+  // Indices of all marks that are sameAny with mark i
+  public int[] sameAnyGroup(int i) {
+    int r[] = roundedColumn();
+    int key = r[i];
+    int out[] = new int[16];
+    int n = 0;
+    for(int k=0; k<size; k++) {
+      if(r[k]==key) {
+        if(n==out.length) out = Arrays.copyOf(out, n * 2);
+        out[n++] = k;
+      }
+    }
+    return Arrays.copyOf(out, n);
+  }
+
+  // bins equal-width buckets over [min, max); values outside are clamped
+  public int[] histogram(double min, double max, int bins) {
+    if(bins <= 0 || !(max > min))
+      throw new IllegalArgumentException("need bins > 0 and max > min");
+    return ForkJoinPool.commonPool().invoke(new HistogramTask(marks, 0, size, min, max, bins));
+  }
+
+  public double mean() {
+    if(size==0) return Double.NaN;
+    return ForkJoinPool.commonPool().invoke(new SumTask(marks, 0, size)) / size;
+  }
+
+  // p in [0, 100]; nearest-rank percentile
+  public double percentile(double p) {
+    return percentiles(p)[0];
+  }
+
+  // Several percentiles share one parallel sort of the column
+  public double[] percentiles(double... ps) {
+    if(size==0) throw new IllegalStateException("MarkBook is empty");
+    double sorted[] = Arrays.copyOf(marks, size);
+    Arrays.parallelSort(sorted);
+    double out[] = new double[ps.length];
+    for(int i=0; i<ps.length; i++) {
+      if(ps[i] < 0 || ps[i] > 100)
+        throw new IllegalArgumentException("percentile out of range: " + ps[i]);
+      int rank = (int) Math.ceil(ps[i] / 100 * size);
+      out[i] = sorted[Math.max(rank - 1, 0)];
+    }
+    return out;
+  }
+
+  static class RoundTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    final double src[];
+    final int dst[];
+    final int from, to;
+
+    RoundTask(double src[], int dst[], int from, int to) {
+      this.src = src; this.dst = dst; this.from = from; this.to = to;
+    }
+
+    protected void compute() {
+      if(to - from <= THRESHOLD) {
+        for(int i=from; i<to; i++) dst[i] = Math.round((float) src[i]);
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new RoundTask(src, dst, from, mid), new RoundTask(src, dst, mid, to));
+    }
+  }
+
+  static class SumTask extends RecursiveTask<Double> {
+    private static final long serialVersionUID = 1L;
+    final double a[];
+    final int from, to;
+
+    SumTask(double a[], int from, int to) {
+      this.a = a; this.from = from; this.to = to;
+    }
+
+    protected Double compute() {
+      if(to - from <= THRESHOLD) {
+        // four accumulators break the add dependency chain
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = from;
+        for(; i + 3 < to; i += 4) {
+          s0 += a[i]; s1 += a[i + 1]; s2 += a[i + 2]; s3 += a[i + 3];
+        }
+        for(; i < to; i++) s0 += a[i];
+        return (s0 + s1) + (s2 + s3);
+      }
+      int mid = (from + to) >>> 1;
+      SumTask left = new SumTask(a, from, mid);
+      left.fork();
+      double right = new SumTask(a, mid, to).compute();
+      return left.join() + right;
+    }
+  }
+
+  // packs min in the high and max in the low 32 bits
+  static class MinMaxTask extends RecursiveTask<Long> {
+    private static final long serialVersionUID = 1L;
+    final int a[];
+    final int from, to;
+
+    MinMaxTask(int a[], int from, int to) {
+      this.a = a; this.from = from; this.to = to;
+    }
+
+    protected Long compute() {
+      if(to - from <= THRESHOLD) {
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for(int i=from; i<to; i++) {
+          min = Math.min(min, a[i]);
+          max = Math.max(max, a[i]);
+        }
+        return pack(min, max);
+      }
+      int mid = (from + to) >>> 1;
+      MinMaxTask left = new MinMaxTask(a, from, mid);
+      left.fork();
+      long r = new MinMaxTask(a, mid, to).compute();
+      long l = left.join();
+      return pack(Math.min((int) (l >> 32), (int) (r >> 32)), Math.max((int) l, (int) r));
+    }
+
+    static long pack(int min, int max) {
+      return ((long) min << 32) | (max & 0xFFFFFFFFL);
+    }
+  }
+
+  static class CountTask extends RecursiveTask<int[]> {
+    private static final long serialVersionUID = 1L;
+    final int a[];
+    final int from, to, base, width;
+
+    CountTask(int a[], int from, int to, int base, int width) {
+      this.a = a; this.from = from; this.to = to; this.base = base; this.width = width;
+    }
+
+    protected int[] compute() {
+      if(to - from <= THRESHOLD) {
+        int counts[] = new int[width];
+        for(int i=from; i<to; i++) counts[a[i] - base]++;
+        return counts;
+      }
+      int mid = (from + to) >>> 1;
+      CountTask left = new CountTask(a, from, mid, base, width);
+      left.fork();
+      int r[] = new CountTask(a, mid, to, base, width).compute();
+      int l[] = left.join();
+      for(int i=0; i<width; i++) r[i] += l[i];
+      return r;
+    }
+  }
+
+  static class HistogramTask extends RecursiveTask<int[]> {
+    private static final long serialVersionUID = 1L;
+    final double a[];
+    final int from, to, bins;
+    final double min, max;
+
+    HistogramTask(double a[], int from, int to, double min, double max, int bins) {
+      this.a = a; this.from = from; this.to = to; this.min = min; this.max = max; this.bins = bins;
+    }
+
+    protected int[] compute() {
+      if(to - from <= THRESHOLD) {
+        int counts[] = new int[bins];
+        double scale = bins / (max - min);
+        for(int i=from; i<to; i++) {
+          int b = (int) ((a[i] - min) * scale);
+          counts[Math.min(Math.max(b, 0), bins - 1)]++;
+        }
+        return counts;
+      }
+      int mid = (from + to) >>> 1;
+      HistogramTask left = new HistogramTask(a, from, mid, min, max, bins);
+      left.fork();
+      int r[] = new HistogramTask(a, mid, to, min, max, bins).compute();
+      int l[] = left.join();
+      for(int i=0; i<bins; i++) r[i] += l[i];
+      return r;
+    }
+  }
+}
@@ -0,0 +1,132 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* An immutable stack of ints. push and pop do not change the stack, they
+   return a new version in O(1) that shares its storage with the old one,
+   so keeping an old version around (a snapshot) costs nothing.
+
+   Items are stored in chunks of CHUNK ints rather than one node per item,
+   so walking down the stack touches consecutive memory. A chunk can be
+   shared by several versions: the first version to push past the chunk's
+   high-water mark writes in place, any other one copies the part of the
+   chunk it can see (at most CHUNK items, never the whole stack).
+*/
+final class PersistentIntStack {
+  static final int CHUNK = 32;
+
+  private static final class Chunk {
+    final int items[];
+    final AtomicInteger used;          // highest count any version has claimed
+    final PersistentIntStack below;    // the stack under this chunk
+
+    Chunk(int items[], int used, PersistentIntStack below) {
+      this.items = items;
+      this.used = new AtomicInteger(used);
+      this.below = below;
+    }
+  }
+
+  static final PersistentIntStack EMPTY = new PersistentIntStack(null, 0, 0);
+
+  private final Chunk chunk;  // chunk holding the top item, null when empty
+  private final int count;    // items of chunk that belong to this version
+  private final long size;
+
+  private PersistentIntStack(Chunk chunk, int count, long size) {
+    this.chunk = chunk;
+    this.count = count;
+    this.size = size;
+  }
+
+  // A new version with item on top
+  PersistentIntStack push(int item) {
+    if(chunk==null || count==CHUNK) {
+      int items[] = new int[CHUNK];
+      items[0] = item;
+      return new PersistentIntStack(new Chunk(items, 1, this), 1, size + 1);
+    }
+    if(chunk.used.compareAndSet(count, count + 1)) {
+      // we are the newest version of this chunk: write in place
+      chunk.items[count] = item;
+      return new PersistentIntStack(chunk, count + 1, size + 1);
+    }
+    // another version already used the slot: copy what we can see
+    int items[] = java.util.Arrays.copyOf(chunk.items, CHUNK);
+    items[count] = item;
+    return new PersistentIntStack(new Chunk(items, count + 1, chunk.below), count + 1, size + 1);
+  }
+
+  // A new version without the top item
+  PersistentIntStack pop() {
+    if(size==0) {
+      System.out.println("Stack underflow.");
+      return this;
+    }
+    if(count > 1) return new PersistentIntStack(chunk, count - 1, size - 1);
+    return chunk.below;
+  }
+
+  // The top item
+  int peek() {
+    if(size==0) {
+      System.out.println("Stack underflow.");
+      return 0;
+    }
+    return chunk.items[count - 1];
+  }
+
+  long size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size==0;
+  }
+}
+
+/* A mutable IntStack on top of PersistentIntStack.
+   One thread pushes and pops; any number of readers can take a
+   snapshot() at any time, in O(1), without copying and without locks.
+*/
+class SnapshotStack implements IntStack {
+  private volatile PersistentIntStack current = PersistentIntStack.EMPTY;
+
+  // Push an item onto the stack
+  public void push(int item) {
+    current = current.push(item);
+  }
+
+  // Pop an item from the stack
+  public int pop() {
+    PersistentIntStack s = current;
+    if(s.isEmpty()) {
+      System.out.println("Stack underflow.");
+      return 0;
+    }
+    int item = s.peek();
+    current = s.pop();
+    return item;
+  }
+
+  // The current contents; later pushes and pops do not affect it
+  PersistentIntStack snapshot() {
+    return current;
+  }
+}
+
+class IFTest5 {
+  public static void main(String args[]) {
+    SnapshotStack stack = new SnapshotStack();
+    for(int i=0; i<100; i++) stack.push(i);
+
+    PersistentIntStack snap = stack.snapshot(); // no copy
+    for(int i=0; i<50; i++) stack.pop();
+    for(int i=0; i<10; i++) stack.push(-i);
+
+    System.out.println("Live top: " + stack.pop());
+    System.out.println("Snapshot size: " + snap.size() + ", top: " + snap.peek());
+
+    long sum = 0;
+    for(PersistentIntStack s = snap; !s.isEmpty(); s = s.pop()) sum += s.peek();
+    System.out.println("Sum of snapshot: " + sum);
+  }
+}
@@ -0,0 +1,158 @@
+/* A "growable" stack like DynStack, but it grows by linking fixed-size
+   chunks instead of doubling and copying the array: a push that fills a
+   chunk just links (or reuses) the next one, so growth is O(1).
+
+   After pops, emptied chunks are kept as spares so that a burst of pushes
+   does not allocate again. Only when more than maxSpareChunks are idle are
+   the trailing ones released (hysteresis), which keeps memory bounded
+   without thrashing on a push/pop boundary.
+*/
+class SegmentedStack implements BulkIntStack {
+  private static final class Chunk {
+    final int items[];
+    Chunk prev, next;
+
+    Chunk(int size, Chunk prev) {
+      items = new int[size];
+      this.prev = prev;
+    }
+  }
+
+  private final int chunkSize;
+  private final int maxSpareChunks;
+  private Chunk current;   // chunk holding the top item
+  private Chunk last;      // last linked chunk (current or a spare)
+  private int tos;         // index of the top item inside current, -1 if empty
+  private int spareChunks; // chunks linked after current
+  private long size;
+
+  // allocate and initialize stack
+  SegmentedStack(int chunkSize) {
+    this(chunkSize, 1);
+  }
+
+  // maxSpareChunks: emptied chunks kept linked before any is released
+  SegmentedStack(int chunkSize, int maxSpareChunks) {
+    if(chunkSize <= 0)
+      throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+    if(maxSpareChunks < 0)
+      throw new IllegalArgumentException("maxSpareChunks must not be negative: " + maxSpareChunks);
+    this.chunkSize = chunkSize;
+    this.maxSpareChunks = maxSpareChunks;
+    current = last = new Chunk(chunkSize, null);
+    tos = -1;
+  }
+
+  // Push an item onto the stack
+  public void push(int item) {
+    if(tos==chunkSize-1) nextChunk();
+    current.items[++tos] = item;
+    size++;
+  }
+
+  // Copies whole runs into each chunk instead of pushing one by one
+  public void pushAll(int src[], int off, int len) {
+    while(len > 0) {
+      if(tos==chunkSize-1) nextChunk();
+      int n = Math.min(len, chunkSize - 1 - tos);
+      System.arraycopy(src, off, current.items, tos + 1, n);
+      tos += n;
+      size += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  // Copies whole runs out of each chunk; a run comes out bottom first, so
+  // it is reversed in dst
+  public int popInto(int dst[], int off, int len) {
+    int n = (int) Math.min(len, size);
+    for(int left=n; left > 0; ) {
+      int m = Math.min(left, tos + 1);
+      System.arraycopy(current.items, tos - m + 1, dst, off, m);
+      for(int i=off, j=off+m-1; i<j; i++, j--) {
+        int t = dst[i]; dst[i] = dst[j]; dst[j] = t;
+      }
+      tos -= m;
+      size -= m;
+      off += m;
+      left -= m;
+      if(tos < 0 && current.prev!=null) {
+        current = current.prev;
+        tos = chunkSize - 1;
+        spareChunks++;
+        trimSpares();
+      }
+    }
+    return n;
+  }
+
+  // Pop an item from the stack
+  public int pop() {
+    if(size==0) {
+      System.out.println("Stack underflow.");
+      return 0;
+    }
+    int item = current.items[tos--];
+    size--;
+    if(tos < 0 && current.prev!=null) {
+      current = current.prev;
+      tos = chunkSize - 1;
+      spareChunks++;
+      trimSpares();
+    }
+    return item;
+  }
+
+  public long size() {
+    return size;
+  }
+
+  // number of chunks currently linked (including spares)
+  public int chunkCount() {
+    int n = 0;
+    for(Chunk c = last; c!=null; c = c.prev) n++;
+    return n;
+  }
+
+  // current chunk is full, move on to a spare one or link a new one
+  private void nextChunk() {
+    if(current.next==null) {
+      current.next = new Chunk(chunkSize, current);
+      last = current.next;
+    }
+    else
+      spareChunks--;
+    current = current.next;
+    tos = -1;
+  }
+
+  // release the farthest spare chunks beyond the hysteresis limit
+  private void trimSpares() {
+    while(spareChunks > maxSpareChunks) {
+      Chunk prev = last.prev;
+      prev.next = null;
+      last.prev = null;
+      last = prev;
+      spareChunks--;
+    }
+  }
+}
+
+class IFTest4 {
+  public static void main(String args[]) {
+    SegmentedStack stack = new SegmentedStack(4, 1);
+
+    // grows to 4 chunks without copying any item
+    for(int i=0; i<16; i++) stack.push(i);
+    System.out.println("Chunks after pushes: " + stack.chunkCount());
+
+    // popping keeps one spare chunk and releases the rest
+    for(int i=0; i<14; i++) stack.pop();
+    System.out.println("Chunks after pops: " + stack.chunkCount());
+
+    System.out.println("Values left:");
+    while(stack.size() > 0)
+      System.out.println(stack.pop());
+  }
+}
@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.function.IntFunction;
+
+/* Benchmarks for every IntStack implementation, with ArrayDeque<Integer>
+   and java.util.Stack<Integer> as baselines.
+
+   Workloads:
+     pushPop  push n items into a presized stack, then pop them all
+     growth   start from capacity 1 and push n items (measures resizing)
+     mixed    random 60/40 push/pop sequence that keeps the stack non-empty
+
+   Like JMH it runs warmup iterations first and reports the mean of the
+   measured ones; ns/op is per push or pop. The alloc column is what
+   -prof gc shows as gc.alloc.rate.norm: bytes allocated per operation,
+   read from the thread allocation counter.
+
+   java StackBench [n] [iterations]
+*/
+class StackBench {
+  static final int WARMUP = 5;
+  static volatile long sink; // keeps results alive, like a JMH Blackhole
+
+  // adapters so the boxed baselines can run the same workloads
+  static class ArrayDequeStack implements IntStack {
+    private final ArrayDeque<Integer> deque;
+
+    ArrayDequeStack(int size) {
+      deque = new ArrayDeque<>(size);
+    }
+
+    public void push(int item) {
+      deque.push(item);
+    }
+
+    public int pop() {
+      return deque.pop();
+    }
+  }
+
+  static class UtilStack implements IntStack {
+    private final java.util.Stack<Integer> stack = new java.util.Stack<>();
+
+    public void push(int item) {
+      stack.push(item);
+    }
+
+    public int pop() {
+      return stack.pop();
+    }
+  }
+
+  // a MappedStack on its own temp file, removed when the run is done
+  static class TempMappedStack extends MappedStack {
+    private final Path file;
+
+    TempMappedStack(Path file) throws IOException {
+      super(file, 1 << 16, SyncPolicy.NEVER, 0);
+      this.file = file;
+    }
+
+    static TempMappedStack create() {
+      try {
+        Path file = Files.createTempFile("stackbench", ".stack");
+        file.toFile().deleteOnExit();
+        return new TempMappedStack(file);
+      } catch(IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    void free() {
+      try {
+        close();
+        Files.deleteIfExists(file);
+      } catch(IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  static final String NAMES[] = {
+    "FixedStack", "DynStack", "IntArrayStack", "SegmentedStack",
+    "DirectStack", "ConcurrentStack", "MappedStack",
+    "ArrayDeque<Integer>", "java.util.Stack"
+  };
+
+  // capacity -> new stack; FixedStack is always sized for the whole run
+  static IntFunction<IntStack> factory(String name, int n) {
+    switch(name) {
+      case "FixedStack":          return size -> new FixedStack(n);
+      case "DynStack":            return size -> new DynStack(size);
+      case "IntArrayStack":       return size -> new IntArrayStack(size, true);
+      case "SegmentedStack":      return size -> new SegmentedStack(4096);
+      case "DirectStack":         return size -> new DirectStack(4096);
+      case "ConcurrentStack":     return size -> new ConcurrentStack();
+      case "MappedStack":         return size -> TempMappedStack.create();
+      case "ArrayDeque<Integer>": return size -> new ArrayDequeStack(size);
+      case "java.util.Stack":     return size -> new UtilStack();
+      default: throw new IllegalArgumentException(name);
+    }
+  }
+
+  public static void main(String args[]) {
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+    System.out.printf("%-20s %-8s %10s %12s%n", "stack", "workload", "ns/op", "alloc B/op");
+    for(String name : NAMES) {
+      IntFunction<IntStack> f = factory(name, n);
+      report(name, "pushPop", n, iterations, () -> pushPop(f.apply(n), n));
+      report(name, "growth", n, iterations, () -> growth(f.apply(1), n));
+      report(name, "mixed", n, iterations, () -> mixed(f.apply(16), n));
+    }
+  }
+
+  // each workload returns the number of operations it performed
+  interface Workload {
+    long run();
+  }
+
+  static long pushPop(IntStack s, int n) {
+    long sum = 0;
+    for(int i=0; i<n; i++) s.push(i);
+    for(int i=0; i<n; i++) sum += s.pop();
+    sink += sum;
+    free(s);
+    return 2L * n;
+  }
+
+  static long growth(IntStack s, int n) {
+    for(int i=0; i<n; i++) s.push(i);
+    sink += s.pop();
+    free(s);
+    return n + 1;
+  }
+
+  static long mixed(IntStack s, int n) {
+    long sum = 0;
+    int depth = 0;
+    int seed = 12345;
+    for(int i=0; i<n; i++) {
+      seed = seed * 1103515245 + 12345; // cheap LCG, no allocation
+      if(depth==0 || (seed >>> 16) % 10 < 6) {
+        s.push(i);
+        depth++;
+      }
+      else {
+        sum += s.pop();
+        depth--;
+      }
+    }
+    sink += sum;
+    free(s);
+    return n;
+  }
+
+  static void free(IntStack s) {
+    if(s instanceof DirectStack) ((DirectStack) s).free();
+    if(s instanceof TempMappedStack) ((TempMappedStack) s).free();
+  }
+
+  static void report(String name, String workload, int n, int iterations, Workload w) {
+    for(int i=0; i<WARMUP; i++) w.run();
+    long ops = 0;
+    long bytesBefore = allocatedBytes();
+    long begin = System.nanoTime();
+    for(int i=0; i<iterations; i++) ops += w.run();
+    long elapsed = System.nanoTime() - begin;
+    long bytes = allocatedBytes() - bytesBefore;
+    System.out.printf("%-20s %-8s %10.2f %12.2f%n", name, workload,
+                      (double) elapsed / ops, (double) bytes / ops);
+  }
+
+  // HotSpot's per-thread allocation counter, the source -prof gc uses too
+  static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if(bean instanceof com.sun.management.ThreadMXBean)
+      return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    return 0;
+  }
+}
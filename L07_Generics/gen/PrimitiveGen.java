@@ -0,0 +1,51 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/* Generates primitive-specialized stacks, array lists and deques
+   from the *.tmpl files in this folder.
+
+   Placeholders:
+     #Type#        capitalized type name  (Int, Long, Double, Char)
+     #type#        java primitive         (int, long, double, char)
+     #IMPLEMENTS#  " implements BulkIntStack" for the int stack, empty otherwise
+
+   Run from L07_Generics/gen:
+     java PrimitiveGen.java          (writes into L07_Generics)
+     java PrimitiveGen.java <outDir>
+*/
+public class PrimitiveGen {
+  static final String TYPES[] = { "int", "long", "double", "char" };
+  static final String TEMPLATES[][] = {
+    // template file, generated class name suffix
+    { "Stack.tmpl", "ArrayStack" },
+    { "List.tmpl",  "ArrayList" },
+    { "Deque.tmpl", "ArrayDeque" },
+  };
+
+  public static void main(String args[]) throws IOException {
+    Path outDir = Paths.get(args.length > 0 ? args[0] : "..");
+    for(String tmpl[] : TEMPLATES) {
+      String text = new String(Files.readAllBytes(Paths.get(tmpl[0])), StandardCharsets.UTF_8);
+      for(String type : TYPES) {
+        String name = capitalize(type) + tmpl[1];
+        Path out = outDir.resolve(name + ".java");
+        Files.write(out, expand(text, type, tmpl[1]).getBytes(StandardCharsets.UTF_8));
+        System.out.println("Generated " + out);
+      }
+    }
+  }
+
+  static String expand(String text, String type, String kind) {
+    String impl = type.equals("int") && kind.equals("ArrayStack") ? " implements BulkIntStack" : "";
+    return text.replace("#Type#", capitalize(type))
+               .replace("#type#", type)
+               .replace("#IMPLEMENTS#", impl);
+  }
+
+  static String capitalize(String s) {
+    return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+  }
+}
@@ -0,0 +1,432 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+//Mirrors the files FolderProcessor would find under a source root into a
+//target root, writing only the blocks that changed, the way rsync does.
+//
+//For each file:
+// - same size and mtime as the target copy: skipped (rsync's quick check);
+// - no target copy: copied with FileChannel.transferTo;
+// - otherwise the target is cut into blocks, each with a weak rolling
+//   checksum, and the source (memory-mapped) is scanned with the rolling
+//   checksum to find those blocks at any offset. If every block found
+//   is still at its old offset the changed ranges are written into the target
+//   in place; if data moved, a new file is assembled next to the target from
+//   transferTo() runs of old blocks and source literals, then renamed over it.
+//The target gets the source's mtime, so the next run can skip it.
+//
+//Files are spread over the fork-join pool; files the target has but the
+//source does not are left alone.
+public class BlockSync
+{
+   public static final int DEFAULT_BLOCK = 8192;
+   private static final int TABLE_BITS = 16;
+
+   private final ForkJoinPool pool;
+   private final int block;
+   private final LongAdder files = new LongAdder(), skipped = new LongAdder(), copied = new LongAdder();
+   private final LongAdder inPlace = new LongAdder(), rebuilt = new LongAdder();
+   private final LongAdder scannedBytes = new LongAdder(), matchedBytes = new LongAdder(), writtenBytes = new LongAdder();
+
+   public BlockSync(ForkJoinPool pool, int block)
+   {
+      if (block < 64)
+      {
+         throw new IllegalArgumentException("block too small: " + block);
+      }
+      this.pool = pool;
+      this.block = block;
+   }
+
+   //Syncs every file under source ending in extension to the same relative path under target
+   public void sync(Path source, Path target, String extension)
+   {
+      ConcurrentLinkedQueue<Path> found = new ConcurrentLinkedQueue<Path>();
+      pool.invoke(new NioFolderProcessor(source, extension, found::add));
+      List<Path> list = new ArrayList<Path>(found);
+      if (!list.isEmpty())
+      {
+         pool.invoke(new SyncTask(source, target, list, 0, list.size()));
+      }
+   }
+
+   public long getScannedBytes()
+   {
+      return scannedBytes.sum();
+   }
+
+   public long getWrittenBytes()
+   {
+      return writtenBytes.sum();
+   }
+
+   public String stats()
+   {
+      return String.format("%d files: %d skipped, %d copied, %d patched in place, %d rebuilt; "
+            + "%d MB compared, %d MB matched, %d MB written", files.sum(), skipped.sum(), copied.sum(), inPlace.sum(),
+            rebuilt.sum(), scannedBytes.sum() >> 20, matchedBytes.sum() >> 20, writtenBytes.sum() >> 20);
+   }
+
+   private final class SyncTask extends RecursiveAction
+   {
+      private static final long serialVersionUID = 1L;
+      private final Path source, target;
+      private final List<Path> list;
+      private final int from, to;
+
+      SyncTask(Path source, Path target, List<Path> list, int from, int to)
+      {
+         this.source = source;
+         this.target = target;
+         this.list = list;
+         this.from = from;
+         this.to = to;
+      }
+
+      @Override
+      protected void compute()
+      {
+         if (to - from > 1)
+         {
+            int mid = (from + to) >>> 1;
+            invokeAll(new SyncTask(source, target, list, from, mid), new SyncTask(source, target, list, mid, to));
+            return;
+         }
+         Path src = list.get(from);
+         Path dst = target.resolve(source.relativize(src).toString());
+         try
+         {
+            syncFile(src, dst);
+         } catch (IOException e)
+         {
+            System.out.println("Cannot sync " + src + ": " + e);
+         }
+      }
+   }
+
+   void syncFile(Path src, Path dst) throws IOException
+   {
+      files.increment();
+      FileTime mtime = Files.getLastModifiedTime(src);
+      long size = Files.size(src);
+      if (!Files.exists(dst))
+      {
+         Files.createDirectories(dst.getParent());
+         copy(src, dst, size);
+      } else if (Files.size(dst) == size && Files.getLastModifiedTime(dst).equals(mtime))
+      {
+         skipped.increment();
+         return;
+      } else if (size > Integer.MAX_VALUE || Files.size(dst) > (long) Integer.MAX_VALUE)
+      {
+         //beyond one mapping; not worth windowed scanning here
+         copy(src, dst, size);
+      } else
+      {
+         delta(src, dst, (int) size);
+      }
+      Files.setLastModifiedTime(dst, mtime);
+   }
+
+   private void copy(Path src, Path dst, long size) throws IOException
+   {
+      try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+            FileChannel out = FileChannel.open(dst, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                  StandardOpenOption.TRUNCATE_EXISTING))
+      {
+         transfer(in, 0, size, out);
+      }
+      copied.increment();
+      writtenBytes.add(size);
+   }
+
+   private static void transfer(FileChannel in, long pos, long len, FileChannel out) throws IOException
+   {
+      while (len > 0)
+      {
+         long n = in.transferTo(pos, len, out);
+         if (n <= 0)
+         {
+            throw new IOException("transferTo made no progress");
+         }
+         pos += n;
+         len -= n;
+      }
+   }
+
+   //Weak checksums of the old target's blocks, hashed for lookup. rsync pairs
+   //them with a strong checksum because the other copy is remote; here both
+   //copies are local, so a weak hit is confirmed by comparing the bytes with
+   //the old block itself, which is exact and cheaper than hashing both sides.
+   private final class Signature
+   {
+      final FileChannel ch;
+      final int blocks;
+      final int[] weak, head, next;
+      private final ByteBuffer probe = ByteBuffer.allocate(block);
+
+      Signature(FileChannel ch) throws IOException
+      {
+         this.ch = ch;
+         blocks = (int) (ch.size() / block); //a short last block is never matched
+         weak = new int[blocks];
+         next = new int[blocks];
+         head = new int[1 << TABLE_BITS];
+         Arrays.fill(head, -1);
+         ByteBuffer buf = ByteBuffer.allocate(block * 128);
+         int k = 0;
+         while (k < blocks)
+         {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), (long) (blocks - k) * block));
+            while (buf.hasRemaining())
+            {
+               if (ch.read(buf, (long) k * block + buf.position()) < 0)
+               {
+                  throw new IOException("target shrank");
+               }
+            }
+            for (int off = 0; off < buf.limit(); off += block, k++)
+            {
+               weak[k] = Rolling.of(buf.array(), off, block);
+               int h = slot(weak[k]);
+               next[k] = head[h];
+               head[h] = k;
+            }
+         }
+         scannedBytes.add((long) blocks * block);
+      }
+
+      //Index of a target block equal to src[pos, pos + block), trying the
+      //one at the same offset first; -1 if none
+      int find(int weakSum, MappedByteBuffer src, int pos) throws IOException
+      {
+         int same = pos % block == 0 ? pos / block : -1;
+         if (same >= 0 && same < blocks && weak[same] == weakSum && equal(same, src, pos))
+         {
+            return same;
+         }
+         for (int k = head[slot(weakSum)]; k >= 0; k = next[k])
+         {
+            if (k != same && weak[k] == weakSum && equal(k, src, pos))
+            {
+               return k;
+            }
+         }
+         return -1;
+      }
+
+      boolean equal(int k, MappedByteBuffer src, int pos) throws IOException
+      {
+         probe.clear();
+         while (probe.hasRemaining())
+         {
+            if (ch.read(probe, (long) k * block + probe.position()) < 0)
+            {
+               return false;
+            }
+         }
+         probe.flip();
+         return probe.equals(src.duplicate().limit(pos + block).position(pos));
+      }
+   }
+
+   private static int slot(int weak)
+   {
+      return (weak ^ (weak >>> TABLE_BITS)) & ((1 << TABLE_BITS) - 1);
+   }
+
+   //rsync's checksum: a = sum of bytes, b = sum of running a, both mod 2^16
+   static final class Rolling
+   {
+      int a, b;
+
+      static int of(byte[] buf, int off, int len)
+      {
+         int a = 0, b = 0;
+         for (int i = 0; i < len; i++)
+         {
+            int x = buf[off + i] & 0xFF;
+            a += x;
+            b += (len - i) * x;
+         }
+         return (a & 0xFFFF) | (b << 16);
+      }
+
+      void reset(ByteBuffer buf, int off, int len)
+      {
+         a = 0;
+         b = 0;
+         for (int i = 0; i < len; i++)
+         {
+            int x = buf.get(off + i) & 0xFF;
+            a += x;
+            b += (len - i) * x;
+         }
+      }
+
+      //Slides the window one byte: out leaves at the front, in joins at the back
+      void roll(int out, int in, int len)
+      {
+         a += in - out;
+         b += a - len * out;
+      }
+
+      int value()
+      {
+         return (a & 0xFFFF) | (b << 16);
+      }
+   }
+
+   private void delta(Path src, Path dst, int size) throws IOException
+   {
+      //ranges: {srcPos, len, targetBlock or -1 for a literal}
+      List<int[]> ops = new ArrayList<int[]>();
+      boolean aligned = true;
+      try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+            FileChannel old = FileChannel.open(dst, StandardOpenOption.READ))
+      {
+         Signature sig = new Signature(old);
+         MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+         scannedBytes.add(size);
+         Rolling rolling = new Rolling();
+         int literal = 0;
+         int pos = 0;
+         boolean fresh = true;
+         while (sig.blocks > 0 && pos + block <= size)
+         {
+            int k = -1;
+            if (fresh)
+            {
+               //after a match the next block usually follows at the same
+               //offset; compare it before spending a checksum on it
+               if (pos % block == 0 && pos / block < sig.blocks && sig.equal(pos / block, map, pos))
+               {
+                  k = pos / block;
+               } else
+               {
+                  rolling.reset(map, pos, block);
+                  fresh = false;
+               }
+            }
+            if (k < 0)
+            {
+               k = sig.find(rolling.value(), map, pos);
+            }
+            if (k >= 0)
+            {
+               if (pos > literal)
+               {
+                  ops.add(new int[] { literal, pos - literal, -1 });
+               }
+               ops.add(new int[] { pos, block, k });
+               aligned &= (long) k * block == pos;
+               pos += block;
+               literal = pos;
+               fresh = true;
+            } else
+            {
+               if (pos + block < size)
+               {
+                  rolling.roll(map.get(pos) & 0xFF, map.get(pos + block) & 0xFF, block);
+               }
+               pos++;
+            }
+         }
+         if (size > literal)
+         {
+            ops.add(new int[] { literal, size - literal, -1 });
+         }
+         if (aligned)
+         {
+            patchInPlace(dst, map, ops, size);
+         } else
+         {
+            rebuild(dst, old, map, ops);
+         }
+      }
+   }
+
+   private void patchInPlace(Path dst, MappedByteBuffer map, List<int[]> ops, int size) throws IOException
+   {
+      try (FileChannel out = FileChannel.open(dst, StandardOpenOption.WRITE))
+      {
+         for (int[] op : ops)
+         {
+            if (op[2] >= 0)
+            {
+               matchedBytes.add(op[1]);
+            } else
+            {
+               write(out, map, op[0], op[1], op[0]);
+            }
+         }
+         out.truncate(size);
+      }
+      inPlace.increment();
+   }
+
+   private void rebuild(Path dst, FileChannel old, MappedByteBuffer map, List<int[]> ops) throws IOException
+   {
+      Path tmp = dst.resolveSibling(dst.getFileName() + ".sync-tmp");
+      try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING))
+      {
+         for (int[] op : ops)
+         {
+            if (op[2] >= 0)
+            {
+               out.position(op[0]);
+               transfer(old, (long) op[2] * block, op[1], out);
+               matchedBytes.add(op[1]);
+               //reused from the old copy, but written to the disk all the same
+               writtenBytes.add(op[1]);
+            } else
+            {
+               write(out, map, op[0], op[1], op[0]);
+            }
+         }
+      }
+      Files.move(tmp, dst, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      rebuilt.increment();
+   }
+
+   private void write(FileChannel out, MappedByteBuffer map, int off, int len, long pos) throws IOException
+   {
+      ByteBuffer slice = map.duplicate().limit(off + len).position(off);
+      while (slice.hasRemaining())
+      {
+         pos += out.write(slice, pos);
+      }
+      writtenBytes.add(len);
+   }
+
+   //java BlockSync source target [extension] [blockSize]
+   public static void main(String[] args)
+   {
+      if (args.length < 2)
+      {
+         System.out.println("Usage: java BlockSync source target [extension] [blockSize]");
+         return;
+      }
+      BlockSync sync = new BlockSync(ForkJoinPool.commonPool(), args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_BLOCK);
+      long start = System.nanoTime();
+      sync.sync(Paths.get(args[0]), Paths.get(args[1]), args.length > 2 ? args[2] : "");
+      System.out.printf("%s in %d ms.\n", sync.stats(), (System.nanoTime() - start) / 1_000_000);
+   }
+}
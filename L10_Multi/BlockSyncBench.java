@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+//Throughput of BlockSync on a large, mostly unchanged tree, next to a plain
+//stream copy of the same files.
+//
+//   java BlockSyncBench [dir] [files] [MB per file]
+//
+//After a first full sync, the source is changed: a few bytes overwritten in
+//every 4th file, 100 bytes inserted near the start of every 16th file (so its
+//blocks move) and every file's mtime bumped, so the quick check cannot skip
+//anything. The second sync has to compare every byte.
+public class BlockSyncBench
+{
+   public static void main(String[] args) throws IOException
+   {
+      Path dir = Paths.get(args.length > 0 ? args[0] : "blocksync-bench");
+      int count = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+      int mb = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+      Path src = dir.resolve("src"), dst = dir.resolve("dst"), plain = dir.resolve("plain");
+      Random random = new Random(42);
+      byte[] data = new byte[mb << 20];
+      for (int i = 0; i < count; i++)
+      {
+         random.nextBytes(data);
+         Path file = src.resolve("g" + (i % 8)).resolve("file" + i + ".dat");
+         Files.createDirectories(file.getParent());
+         Files.write(file, data);
+      }
+      long total = (long) count * mb << 20;
+      ForkJoinPool pool = ForkJoinPool.commonPool();
+
+      BlockSync first = new BlockSync(pool, BlockSync.DEFAULT_BLOCK);
+      report("Initial sync", first, time(() -> first.sync(src, dst, ".dat")), total);
+
+      for (int i = 0; i < count; i++)
+      {
+         Path file = src.resolve("g" + (i % 8)).resolve("file" + i + ".dat");
+         if (i % 16 == 0)
+         {
+            byte[] old = Files.readAllBytes(file);
+            byte[] moved = new byte[old.length + 100];
+            System.arraycopy(old, 0, moved, 0, 1000);
+            System.arraycopy(old, 1000, moved, 1100, old.length - 1000);
+            Files.write(file, moved);
+         } else if (i % 4 == 0)
+         {
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw"))
+            {
+               for (int k = 0; k < 5; k++)
+               {
+                  raf.seek(random.nextInt(mb << 20));
+                  raf.write(random.nextInt(256));
+               }
+            }
+         }
+         Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+      }
+
+      BlockSync second = new BlockSync(pool, BlockSync.DEFAULT_BLOCK);
+      report("Delta sync", second, time(() -> second.sync(src, dst, ".dat")), total);
+      BlockSync third = new BlockSync(pool, BlockSync.DEFAULT_BLOCK);
+      report("Unchanged", third, time(() -> third.sync(src, dst, ".dat")), total);
+
+      long ms = time(() -> {
+         try (Stream<Path> all = Files.walk(src))
+         {
+            for (Path f : (Iterable<Path>) all.filter(Files::isRegularFile)::iterator)
+            {
+               Path to = plain.resolve(src.relativize(f).toString());
+               Files.createDirectories(to.getParent());
+               Files.copy(f, to, StandardCopyOption.REPLACE_EXISTING);
+            }
+         } catch (IOException e)
+         {
+            throw new RuntimeException(e);
+         }
+      });
+      System.out.printf("%-13s %6d ms  %7.1f MB/s\n", "Plain copy", ms, total / 1e6 / (ms / 1e3));
+
+      int bad = 0;
+      for (int i = 0; i < count; i++)
+      {
+         Path rel = Paths.get("g" + (i % 8), "file" + i + ".dat");
+         if (Files.mismatch(src.resolve(rel), dst.resolve(rel)) != -1)
+         {
+            bad++;
+         }
+      }
+      System.out.printf("Files differing after sync: %d\n", bad);
+   }
+
+   private static long time(Runnable r)
+   {
+      long start = System.nanoTime();
+      r.run();
+      return (System.nanoTime() - start) / 1_000_000;
+   }
+
+   private static void report(String name, BlockSync sync, long ms, long total)
+   {
+      System.out.printf("%-13s %6d ms  %7.1f MB/s  %s\n", name, ms, total / 1e6 / (ms / 1e3), sync.stats());
+   }
+}
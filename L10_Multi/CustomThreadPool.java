@@ -1,102 +1,695 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
  
-@SuppressWarnings("unused")
 public class CustomThreadPool
 {
-    //Thread pool size
+    //How workers get their tasks
+    public enum Mode
+    {
+        //All workers take from one shared FIFO queue
+        SHARED_QUEUE,
+        //Each worker owns a deque: tasks submitted from inside a worker go to
+        //its own deque (LIFO for the owner), idle workers steal from the other
+        //end of a random worker's deque. Good for recursive workloads.
+        WORK_STEALING,
+        //Every task runs on its own virtual thread; poolSize caps how many
+        //run at once. Blocking I/O then parks the virtual thread instead of
+        //holding one of a few platform workers. Needs Java 21, otherwise
+        //platform threads are used.
+        VIRTUAL
+    }
+ 
+    //Pool states: accepting tasks, draining the queue, stopped
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+ 
+    //Put into the queue once per worker to make it exit. Lowest possible
+    //priority, so a PriorityTaskQueue still hands out all real tasks first.
+    private static final Runnable POISON = new PriorityTask(Integer.MAX_VALUE, Prioritized.NO_DEADLINE, () -> { });
+ 
+    //Thread pool size (the maximum for an elastic pool)
     private final int poolSize;
+ 
+    //Elastic sizing, SHARED_QUEUE only: lower bound, idle time after which a
+    //worker may retire (0 = fixed size), number of workers wanted right now
+    private final int minSize;
+    private final long keepAliveNanos;
+    private volatile int targetSize;
+    private final AtomicInteger liveWorkers = new AtomicInteger();
+ 
+    private final Mode mode;
      
-    //Internally pool is an array
+    //Internally pool is an array (empty in VIRTUAL mode). A slot is null
+    //while the pool is starting or after an elastic worker retired.
     private final WorkerThread[] workers;
      
-    // FIFO ordering
-    private final LinkedBlockingQueue<Runnable> queue;
+    // FIFO ordering by default. LinkedBlockingQueue is already a thread-safe
+    // MPMC queue (separate locks for put and take), so no outer monitor is
+    // needed. Any other BlockingQueue, such as a PriorityTaskQueue, can be
+    // plugged in to change the scheduling policy.
+    // In WORK_STEALING mode it only holds tasks submitted from outside the pool.
+    private final BlockingQueue<Runnable> queue;
+ 
+    //WORK_STEALING: parked workers waiting for a task
+    private final ConcurrentLinkedQueue<WorkerThread> idle = new ConcurrentLinkedQueue<WorkerThread>();
+ 
+    private volatile int state = RUNNING;
+ 
+    //Opened when the pool is shut down and nothing runs any more
+    private final CountDownLatch terminated = new CountDownLatch(1);
+ 
+    //VIRTUAL: concurrency cap, thread source and the threads running tasks
+    private final Semaphore permits;
+    private final ThreadFactory virtualFactory;
+    private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+    private volatile PinningMonitor pinning;
+ 
+    //null until enableMetrics() is called, so an unmonitored pool pays nothing
+    private volatile PoolMetrics metrics;
+ 
+    //Remembers when a task was queued, to measure its queue wait.
+    //Passes the priority of the wrapped task on to a PriorityTaskQueue.
+    private static final class TimedTask implements Runnable, Prioritized {
+        final Runnable task;
+        final long enqueued;
+ 
+        TimedTask(Runnable task, long enqueued) {
+            this.task = task;
+            this.enqueued = enqueued;
+        }
+ 
+        public void run() {
+            task.run();
+        }
+ 
+        public int getPriority() {
+            return task instanceof Prioritized ? ((Prioritized) task).getPriority() : PriorityTask.NORMAL;
+        }
+ 
+        public long getDeadlineNanos() {
+            return task instanceof Prioritized ? ((Prioritized) task).getDeadlineNanos() : NO_DEADLINE;
+        }
+ 
+        public void shed() {
+            if (task instanceof Prioritized) {
+                ((Prioritized) task).shed();
+            }
+        }
+    }
  
     public CustomThreadPool(int poolSize)
     {
-        this.poolSize = poolSize;
-        queue = new LinkedBlockingQueue<Runnable>();
+        this(poolSize, Mode.SHARED_QUEUE);
+    }
+ 
+    public CustomThreadPool(int poolSize, Mode mode)
+    {
+        this(poolSize, poolSize, mode, 0, new LinkedBlockingQueue<Runnable>());
+    }
+ 
+    //SHARED_QUEUE pool whose workers take tasks from the given queue, e.g. a
+    //PriorityTaskQueue for priority and deadline-aware scheduling
+    public CustomThreadPool(int poolSize, BlockingQueue<Runnable> queue)
+    {
+        this(poolSize, poolSize, Mode.SHARED_QUEUE, 0, queue);
+    }
+ 
+    //Elastic pool: between minSize and maxSize workers. A PoolSizeController
+    //adds workers while that raises throughput or queued tasks wait too long;
+    //a worker idle for keepAlive retires (never below minSize).
+    public CustomThreadPool(int minSize, int maxSize, long keepAlive, TimeUnit unit)
+    {
+        this(minSize, maxSize, Mode.SHARED_QUEUE, positiveNanos(keepAlive, unit), new LinkedBlockingQueue<Runnable>());
+        //the controller decides from queue wait times, so time every 4th task
+        enableMetrics(4);
+        Thread t = new Thread(new PoolSizeController(this), "pool-size-controller");
+        t.setDaemon(true);
+        t.start();
+    }
+ 
+    private static long positiveNanos(long keepAlive, TimeUnit unit) {
+        if (keepAlive <= 0) {
+            throw new IllegalArgumentException("keepAlive must be positive: " + keepAlive);
+        }
+        return unit.toNanos(keepAlive);
+    }
+ 
+    private CustomThreadPool(int minSize, int maxSize, Mode mode, long keepAliveNanos,
+            BlockingQueue<Runnable> queue)
+    {
+        if (minSize <= 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("need 0 < minSize <= maxSize: " + minSize + ", " + maxSize);
+        }
+        this.poolSize = maxSize;
+        this.minSize = minSize;
+        this.keepAliveNanos = keepAliveNanos;
+        this.targetSize = minSize;
+        this.mode = mode;
+        this.queue = queue;
+        if (mode == Mode.VIRTUAL) {
+            workers = new WorkerThread[0];
+            permits = new Semaphore(poolSize);
+            virtualFactory = VirtualThreads.FACTORY;
+            return;
+        }
         workers = new WorkerThread[poolSize];
+        permits = null;
+        virtualFactory = null;
  
-        for (int i = 0; i < poolSize; i++) {
-            workers[i] = new WorkerThread();
-            workers[i].start();
+        for (int i = 0; i < minSize; i++) {
+            startWorker();
         }
     }
  
     public void execute(Runnable task) {
-        synchronized (queue) {
-            queue.add(task);
-            queue.notify();
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        if (state != RUNNING) {
+            throw new RejectedExecutionException("Thread pool is shut down");
+        }
+        PoolMetrics m = metrics;
+        if (m != null && m.taskSubmitted()) {
+            task = new TimedTask(task, System.nanoTime());
+        }
+        if (mode == Mode.WORK_STEALING) {
+            WorkerThread self = currentWorker();
+            if (self != null) {
+                //the owner runs it itself unless somebody steals it first
+                self.local.push(task);
+                signalWork();
+                return;
+            }
+        }
+        queue.add(task);
+        //shutdown() may have happened in between; take the task back if nobody got it
+        if (state != RUNNING && queue.remove(task)) {
+            throw new RejectedExecutionException("Thread pool is shut down");
+        }
+        if (mode == Mode.WORK_STEALING) {
+            signalWork();
+        } else if (mode == Mode.VIRTUAL) {
+            startVirtual();
+        }
+    }
+ 
+    public <T> Future<T> submit(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<T>(task);
+        execute(keepPriority(task, future));
+        return future;
+    }
+ 
+    public Future<?> submit(Runnable task) {
+        FutureTask<Object> future = new FutureTask<Object>(task, null);
+        execute(keepPriority(task, future));
+        return future;
+    }
+ 
+    //A FutureTask hides the priority of what it wraps; wrap it once more
+    private static Runnable keepPriority(Object task, FutureTask<?> future) {
+        return task instanceof Prioritized ? PriorityTask.like((Prioritized) task, future) : future;
+    }
+ 
+    //Enqueues the whole batch; a LinkedBlockingQueue signals a taker only when
+    //the queue goes from empty to non-empty, and each woken worker wakes the next.
+    public void executeAll(Collection<? extends Runnable> tasks) {
+        if (state != RUNNING) {
+            throw new RejectedExecutionException("Thread pool is shut down");
+        }
+        PoolMetrics m = metrics;
+        if (m != null) {
+            long now = System.nanoTime();
+            List<Runnable> timed = new ArrayList<Runnable>(tasks.size());
+            for (Runnable task : tasks) {
+                timed.add(m.taskSubmitted() ? new TimedTask(task, now) : task);
+            }
+            tasks = timed;
+        }
+        queue.addAll(tasks);
+        if (state != RUNNING && queue.removeAll(tasks)) {
+            throw new RejectedExecutionException("Thread pool is shut down");
+        }
+        if (mode == Mode.WORK_STEALING) {
+            for (int i = 0; i < Math.min(tasks.size(), poolSize); i++) {
+                signalWork();
+            }
+        } else if (mode == Mode.VIRTUAL) {
+            startVirtual();
+        }
+    }
+ 
+    public int getPoolSize() {
+        return poolSize;
+    }
+ 
+    public int getMinSize() {
+        return minSize;
+    }
+ 
+    public boolean isElastic() {
+        return keepAliveNanos > 0;
+    }
+ 
+    //Workers currently alive (always 0 in VIRTUAL mode)
+    public int getLiveWorkers() {
+        return liveWorkers.get();
+    }
+ 
+    public int getTargetSize() {
+        return targetSize;
+    }
+ 
+    //Elastic pools: ask for n workers (clamped to minSize..poolSize). Extra
+    //workers start at once; surplus ones retire after their current task.
+    void setTargetSize(int n) {
+        targetSize = Math.max(minSize, Math.min(poolSize, n));
+        while (state == RUNNING && liveWorkers.get() < targetSize && startWorker()) {
+            //keep starting
+        }
+    }
+ 
+    //Puts a new worker into a free slot; false if there is none
+    private boolean startWorker() {
+        synchronized (workers) {
+            if (state != RUNNING) {
+                return false;
+            }
+            for (int i = 0; i < workers.length; i++) {
+                if (workers[i] == null) {
+                    workers[i] = new WorkerThread(i);
+                    liveWorkers.incrementAndGet();
+                    workers[i].start();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+ 
+    //Restarts the worker in slot index after its thread died, keeping the
+    //live count as it is. Also done while shutting down: the new worker
+    //takes the POISON the old one never did. False once stopped.
+    private boolean replaceWorker(int index) {
+        synchronized (workers) {
+            if (state == STOP) {
+                return false;
+            }
+            workers[index] = new WorkerThread(index);
+            workers[index].start();
+            return true;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+ 
+    //Tasks waiting to run: the shared queue plus the workers' own deques
+    public int getQueueSize() {
+        int size = queue.size();
+        for (WorkerThread w : workers) {
+            if (w != null) {
+                size += w.local.size();
+            }
+        }
+        return size;
+    }
+ 
+    //Starts recording queue wait, run time and completed/failed counts.
+    //Tasks submitted from now on are measured. Exceptions caught by a
+    //Future returned from submit() count as completed, not failed.
+    public PoolMetrics enableMetrics() {
+        return enableMetrics(16);
+    }
+ 
+    //sampleEvery: time one task in that many (1 = time every task)
+    public synchronized PoolMetrics enableMetrics(int sampleEvery) {
+        if (metrics == null) {
+            metrics = new PoolMetrics(workers.length, this::getQueueSize, sampleEvery);
         }
+        return metrics;
+    }
+ 
+    //null if metrics were never enabled
+    public PoolMetrics getMetrics() {
+        return metrics;
     }
  
     private class WorkerThread extends Thread {
+        //WORK_STEALING: this worker's own tasks
+        final ConcurrentLinkedDeque<Runnable> local = new ConcurrentLinkedDeque<Runnable>();
+ 
+        //position in workers[], used for per-worker metrics
+        final int index;
+ 
+        //set when an elastic pool let this worker go
+        boolean retired;
+ 
+        WorkerThread(int index) {
+            this.index = index;
+        }
+ 
+        CustomThreadPool pool() {
+            return CustomThreadPool.this;
+        }
+ 
         public void run() {
-            Runnable task;
+            boolean died = true;
+            boolean replaced = false;
+            try {
+                if (mode == Mode.WORK_STEALING) {
+                    runStealing();
+                } else {
+                    runShared();
+                }
+                died = false;
+            } finally {
+                if (died) {
+                    //a task threw an Error: pass this worker's tasks on and
+                    //put a new worker into the slot before leaving
+                    Runnable task;
+                    while ((task = local.pollLast()) != null) {
+                        queue.offer(task);
+                    }
+                    replaced = replaceWorker(index);
+                }
+                //a replacement takes over this worker's place in liveWorkers
+                if (!retired && !replaced) {
+                    liveWorkers.decrementAndGet();
+                }
+                tryTerminate();
+            }
+        }
  
-            while (true) {
-                synchronized (queue) {
-                    while (queue.isEmpty()) {
-                        try {
-                            queue.wait();
-                        } catch (InterruptedException e) {
-                            System.out.println("An error occurred while queue is waiting: " + e.getMessage());
+        private void runShared() {
+            while (state != STOP) {
+                Runnable task;
+                try {
+                    task = keepAliveNanos > 0 ? queue.poll(keepAliveNanos, TimeUnit.NANOSECONDS) : queue.take();
+                } catch (InterruptedException e) {
+                    //woken up by shutdownNow(); the loop condition decides
+                    continue;
+                }
+                if (task == null) {
+                    //idle for the whole keep-alive period
+                    if (tryRetire(minSize)) {
+                        targetSize = Math.max(minSize, Math.min(targetSize, liveWorkers.get()));
+                        return;
+                    }
+                    continue;
+                }
+                if (task == POISON) {
+                    break;
+                }
+                runTask(task, index);
+                if (liveWorkers.get() > targetSize && tryRetire(targetSize)) {
+                    return;
+                }
+            }
+        }
+ 
+        //Leave the pool if more than floor workers remain
+        private boolean tryRetire(int floor) {
+            int n;
+            while ((n = liveWorkers.get()) > floor) {
+                if (liveWorkers.compareAndSet(n, n - 1)) {
+                    retired = true;
+                    synchronized (workers) {
+                        workers[index] = null;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+ 
+        private void runStealing() {
+            while (state != STOP) {
+                //read the state before looking for work, so a task added
+                //before shutdown() is always seen by some worker
+                boolean stopping = state != RUNNING;
+                Runnable task = findTask();
+                if (task == null) {
+                    if (stopping) {
+                        break;
+                    }
+                    //announce we are idle, then look once more so a task
+                    //pushed in between cannot be missed
+                    idle.add(this);
+                    task = findTask();
+                    if (task == null) {
+                        if (state == RUNNING) {
+                            LockSupport.park(this);
+                            //a task may have interrupted its own worker; don't keep waking up
+                            Thread.interrupted();
                         }
+                        idle.remove(this);
+                        continue;
                     }
-                    task = (Runnable) queue.poll();
+                    idle.remove(this);
                 }
+                runTask(task, index);
+            }
+        }
  
-                try {
-                    task.run();
-                } catch (RuntimeException e) {
-                    System.out.println("Thread pool is interrupted due to an issue: " + e.getMessage());
+        //own deque first (newest task), then the shared queue, then steal
+        //the oldest task of a random other worker
+        private Runnable findTask() {
+            Runnable task = local.pollFirst();
+            if (task == null) {
+                task = queue.poll();
+            }
+            if (task == null && poolSize > 1) {
+                int start = ThreadLocalRandom.current().nextInt(poolSize);
+                for (int i = 0; i < poolSize && task == null; i++) {
+                    WorkerThread victim = workers[(start + i) % poolSize];
+                    //workers[] is still being filled while the pool starts
+                    if (victim != null && victim != this) {
+                        task = victim.local.pollLast();
+                    }
                 }
             }
+            return task;
+        }
+     }
+ 
+    //worker is the worker index, or -1 for a virtual thread
+    private void runTask(Runnable task, int worker) {
+        PoolMetrics m = metrics;
+        long start = 0;
+        long enqueued = 0;
+        if (task instanceof TimedTask) {
+            //a sampled task: time its queue wait and run
+            start = System.nanoTime();
+            enqueued = ((TimedTask) task).enqueued;
+            task = ((TimedTask) task).task;
+        }
+        boolean ok = false;
+        try {
+            task.run();
+            ok = true;
+        } catch (RuntimeException e) {
+            System.out.println("Thread pool is interrupted due to an issue: " + e.getMessage());
+        } finally {
+            //also for an Error, which then ends the worker (see WorkerThread.run)
+            if (m != null) {
+                if (start != 0) {
+                    m.taskTimed(start - enqueued, System.nanoTime() - start);
+                }
+                m.taskDone(worker, ok);
+            }
         }
     }
  
+    //The worker of this pool running the calling code, or null
+    private WorkerThread currentWorker() {
+        Thread t = Thread.currentThread();
+        if (t instanceof WorkerThread && ((WorkerThread) t).pool() == this) {
+            return (WorkerThread) t;
+        }
+        return null;
+    }
+ 
+    //WORK_STEALING: wake one parked worker, if any
+    private void signalWork() {
+        WorkerThread w = idle.poll();
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+ 
+    //VIRTUAL: start a virtual thread per queued task while permits last
+    private void startVirtual() {
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            //Register the thread before taking the task, so tryTerminate never
+            //sees an empty queue and an empty running set while a task is in
+            //between. start() publishes the slot to the new thread.
+            Runnable[] slot = new Runnable[1];
+            Thread t = virtualFactory.newThread(() -> runVirtual(slot[0]));
+            running.add(t);
+            slot[0] = queue.poll();
+            if (slot[0] == null) {
+                running.remove(t);
+                permits.release();
+                tryTerminate();
+                continue;
+            }
+            t.start();
+        }
+    }
+ 
+    private void runVirtual(Runnable task) {
+        try {
+            if (state != STOP) {
+                runTask(task, -1);
+            }
+        } finally {
+            running.remove(Thread.currentThread());
+            permits.release();
+            startVirtual();
+            tryTerminate();
+        }
+    }
+ 
+    //Open the terminated latch once shut down and nothing is left running
+    private void tryTerminate() {
+        //queue before running: startVirtual adds to running before it polls
+        if (state != RUNNING && liveWorkers.get() == 0
+                && (mode != Mode.VIRTUAL || queue.isEmpty()) && running.isEmpty()) {
+            //poison left over for slots that had no worker
+            queue.removeIf(task -> task == POISON);
+            terminated.countDown();
+        }
+    }
+ 
+    //Looked up once, on first use of VIRTUAL mode, so the fallback notice is
+    //printed once per JVM rather than once per pool
+    private static final class VirtualThreads {
+        static final ThreadFactory FACTORY = virtualThreadFactory();
+    }
+
+    //Thread.ofVirtual().factory() on Java 21+, looked up reflectively so the
+    //class still compiles and runs (with platform threads) on older JDKs
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Object factory = Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            return (ThreadFactory) factory;
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Virtual threads are not available, using platform threads");
+            return Thread::new;
+        }
+    }
+ 
+    //VIRTUAL: start reporting synchronized sections that pin carrier threads
+    //for at least the given time; see pinningReport()
+    public void enablePinningDiagnostics(Duration threshold) {
+        if (pinning == null) {
+            pinning = new PinningMonitor(threshold);
+        }
+    }
+ 
+    public String pinningReport() {
+        PinningMonitor p = pinning;
+        return p == null ? "Pinning diagnostics are off." : p.report();
+    }
+ 
+    //Graceful: no new tasks are accepted, queued tasks still run, then workers exit
     public void shutdown() {
         System.out.println("Shutting down thread pool");
-        for (int i = 0; i < poolSize; i++) {
-            workers[i] = null;
+        if (state == RUNNING) {
+            state = SHUTDOWN;
+            tryTerminate();
+            //one poison per slot is enough even if an elastic pool is growing
+            for (int i = 0; i < workers.length; i++) {
+                if (mode == Mode.WORK_STEALING) {
+                    //parked workers see the state, drain what is left and exit
+                    LockSupport.unpark(workers[i]);
+                } else {
+                    queue.add(POISON);
+                }
+            }
         }
     }
-}
  
-Execute same task which we executed with ThreadPoolExecutor.
+    //Forced: interrupts running tasks and returns the ones that never started
+    public List<Runnable> shutdownNow() {
+        System.out.println("Shutting down thread pool now");
+        state = STOP;
+        List<Runnable> pending = new ArrayList<Runnable>();
+        queue.drainTo(pending);
+        pending.removeIf(task -> task == POISON);
+        for (Thread t : running) {
+            t.interrupt();
+        }
+        tryTerminate();
+        for (int i = 0; i < workers.length; i++) {
+            if (mode == Mode.SHARED_QUEUE) {
+                queue.add(POISON);
+            }
+            WorkerThread w = workers[i];
+            if (w == null) {
+                continue;
+            }
+            Runnable task;
+            while ((task = w.local.pollLast()) != null) {
+                pending.add(task);
+            }
+            w.interrupt();
+        }
+        pending.replaceAll(task -> task instanceof TimedTask ? ((TimedTask) task).task : task);
+        return pending;
+    }
  
-CustomThreadPoolExample.java
-package com.howtodoinjava.threads;
+    public boolean isShutdown() {
+        return state != RUNNING;
+    }
  
-public class CustomThreadPoolExample
-{
-    public static void main(String[] args)
-    {
-        CustomThreadPool customThreadPool = new CustomThreadPool(2);
-         
-        for (int i = 1; i <= 5; i++)
-        {
-            Task task = new Task("Task " + i);
-            System.out.println("Created : " + task.getName());
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
  
-            customThreadPool.execute(task);
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        boolean done = terminated.await(timeout, unit);
+        PinningMonitor p = pinning;
+        if (done && p != null) {
+            p.close();
         }
+        return done;
     }
 }
 
-/* 
-Program output:
- 
-Console
-Created : Task 1
-Created : Task 2
-Created : Task 3
-Created : Task 4
-Created : Task 5
-Executing : Task 1
-Executing : Task 2
-Executing : Task 3
-Executing : Task 4
-Executing : Task 5
-*/ 
+class CustomThreadPoolExample {
+    public static void main(String[] args) throws InterruptedException {
+        CustomThreadPool customThreadPool = new CustomThreadPool(2);
+
+        for (int i = 1; i <= 5; i++) {
+            String name = "Task " + i;
+            System.out.println("Created : " + name);
+
+            customThreadPool.execute(() -> System.out.println("Executing : " + name));
+        }
+        customThreadPool.shutdown();
+        customThreadPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,137 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+//Submit and handoff throughput of CustomThreadPool against the previous
+//design (LinkedBlockingQueue wrapped in synchronized + wait/notify).
+//
+//  submit:   time for one thread to enqueue N no-op tasks
+//  handoff:  time from the first submit until N tasks have run
+//  batch:    like handoff, but all tasks are passed to executeAll() at once
+//
+//java CustomThreadPoolBench [threads] [tasks]
+public class CustomThreadPoolBench
+{
+   //The pool as it was before: every submit and poll takes the queue monitor
+   static class LegacyPool
+   {
+      private final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+
+      LegacyPool(int poolSize)
+      {
+         for (int i = 0; i < poolSize; i++)
+         {
+            Thread t = new Thread(() -> {
+               while (true)
+               {
+                  Runnable task;
+                  synchronized (queue)
+                  {
+                     while (queue.isEmpty())
+                     {
+                        try
+                        {
+                           queue.wait();
+                        } catch (InterruptedException e)
+                        {
+                           return;
+                        }
+                     }
+                     task = queue.poll();
+                  }
+                  task.run();
+               }
+            });
+            t.setDaemon(true); //it has no working shutdown
+            t.start();
+         }
+      }
+
+      void execute(Runnable task)
+      {
+         synchronized (queue)
+         {
+            queue.add(task);
+            queue.notify();
+         }
+      }
+   }
+
+   public static void main(String[] args) throws InterruptedException
+   {
+      int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+      int tasks = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+      for (int pass = 0; pass < 2; pass++) //the first pass is warmup
+      {
+         LegacyPool legacy = new LegacyPool(threads);
+         double legacySubmit = submit(legacy::execute, tasks);
+         double legacyHandoff = handoff(legacy::execute, tasks);
+
+         CustomThreadPool pool = new CustomThreadPool(threads);
+         double poolSubmit = submit(pool::execute, tasks);
+         double poolHandoff = handoff(pool::execute, tasks);
+         double poolBatch = batch(pool, tasks);
+         pool.shutdown();
+         pool.awaitTermination(1, TimeUnit.MINUTES);
+         if (pass == 0)
+         {
+            continue;
+         }
+
+         System.out.printf("%-10s %15s %15s%n", "", "legacy Mtasks/s", "pool Mtasks/s");
+         System.out.printf("%-10s %15.2f %15.2f%n", "submit", legacySubmit, poolSubmit);
+         System.out.printf("%-10s %15.2f %15.2f%n", "handoff", legacyHandoff, poolHandoff);
+         System.out.printf("%-10s %15s %15.2f%n", "batch", "-", poolBatch);
+      }
+   }
+
+   interface Executor
+   {
+      void execute(Runnable task);
+   }
+
+   //submit rate only; waits for the tasks afterwards so runs do not overlap
+   static double submit(Executor ex, int tasks) throws InterruptedException
+   {
+      CountDownLatch done = new CountDownLatch(tasks);
+      Runnable task = done::countDown;
+      long begin = System.nanoTime();
+      for (int i = 0; i < tasks; i++)
+      {
+         ex.execute(task);
+      }
+      long elapsed = System.nanoTime() - begin;
+      done.await();
+      return tasks / (elapsed / 1000.0);
+   }
+
+   static double handoff(Executor ex, int tasks) throws InterruptedException
+   {
+      CountDownLatch done = new CountDownLatch(tasks);
+      Runnable task = done::countDown;
+      long begin = System.nanoTime();
+      for (int i = 0; i < tasks; i++)
+      {
+         ex.execute(task);
+      }
+      done.await();
+      return tasks / ((System.nanoTime() - begin) / 1000.0);
+   }
+
+   static double batch(CustomThreadPool pool, int tasks) throws InterruptedException
+   {
+      CountDownLatch done = new CountDownLatch(tasks);
+      List<Runnable> list = new ArrayList<Runnable>(tasks);
+      for (int i = 0; i < tasks; i++)
+      {
+         list.add(done::countDown);
+      }
+      long begin = System.nanoTime();
+      pool.executeAll(list);
+      done.await();
+      return tasks / ((System.nanoTime() - begin) / 1000.0);
+   }
+}
@@ -0,0 +1,370 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+//A persisted index of matching files that makes rescans incremental.
+//
+//For every directory under a root the index keeps the directory's mtime,
+//the names of its subdirectories and the names of its matching files.
+//Adding, removing or renaming an entry changes the mtime of the directory
+//that holds it, so on a rescan a directory whose mtime is unchanged is not
+//listed again: its subdirectories and matches come from the index. The
+//mtime of a directory does not change when something deeper changes, so
+//every directory is still stat'ed - one stat per directory instead of a
+//listing plus a stat per entry, which on mostly-static trees is the
+//difference between minutes and seconds.
+//
+//A directory whose mtime is within MTIME_SLACK_MILLIS of the scan is
+//stored as untrusted and listed again next time, since a change made in the
+//same clock tick would not move its mtime (FAT only has 2 second steps).
+//
+//   DirectoryIndex index = DirectoryIndex.load(file, "log");
+//   index.rescan(pool, root);
+//   List<Path> logs = index.matches(root);
+//   index.save(file);
+public class DirectoryIndex
+{
+   private static final int MAGIC = 0x44495831; //"DIX1"
+   private static final int VERSION = 1;
+   private static final long UNTRUSTED = Long.MIN_VALUE;
+   static final long MTIME_SLACK_MILLIS = 2000;
+
+   //What the index knows about one directory
+   static final class Entry
+   {
+      final long mtime;
+      final String[] subdirs;
+      final String[] matches;
+
+      Entry(long mtime, String[] subdirs, String[] matches)
+      {
+         this.mtime = mtime;
+         this.subdirs = subdirs;
+         this.matches = matches;
+      }
+   }
+
+   //Counts from one rescan of one root
+   public static final class ScanStats
+   {
+      public final long listed, reused, matches, millis;
+
+      ScanStats(long listed, long reused, long matches, long millis)
+      {
+         this.listed = listed;
+         this.reused = reused;
+         this.matches = matches;
+         this.millis = millis;
+      }
+
+      @Override
+      public String toString()
+      {
+         return String.format("%d dirs listed, %d reused, %d matches, %d ms", listed, reused, matches, millis);
+      }
+   }
+
+   private final String extension;
+   //root -> (absolute directory path -> entry)
+   private final Map<String, Map<String, Entry>> roots = new ConcurrentHashMap<String, Map<String, Entry>>();
+
+   public DirectoryIndex(String extension)
+   {
+      this.extension = extension;
+   }
+
+   //Reads an index saved by save(); a missing, damaged or differently
+   //configured file gives an empty index, so the next rescan is a full one.
+   public static DirectoryIndex load(Path file, String extension)
+   {
+      DirectoryIndex index = new DirectoryIndex(extension);
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)))
+      {
+         if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(extension))
+         {
+            return index;
+         }
+         //every counted item takes at least two bytes, so no count can exceed this
+         long limit = Files.size(file) / 2;
+         for (int r = readCount(in, limit); r > 0; r--)
+         {
+            String root = in.readUTF();
+            int count = readCount(in, limit);
+            Map<String, Entry> dirs = new HashMap<String, Entry>((int) Math.min(count * 4L / 3 + 1, 1 << 30));
+            for (int d = 0; d < count; d++)
+            {
+               String dir = in.readUTF();
+               long mtime = in.readLong();
+               dirs.put(dir, new Entry(mtime, readNames(in, limit), readNames(in, limit)));
+            }
+            index.roots.put(root, dirs);
+         }
+      } catch (NoSuchFileException e)
+      {
+         //first run
+      } catch (IOException e)
+      {
+         System.out.println("Ignoring unreadable index " + file + ": " + e);
+         index.roots.clear();
+      }
+      return index;
+   }
+
+   //Writes to a temporary file first, so a crash never leaves half an index
+   public void save(Path file) throws IOException
+   {
+      Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)))
+      {
+         out.writeInt(MAGIC);
+         out.writeInt(VERSION);
+         out.writeUTF(extension);
+         out.writeInt(roots.size());
+         for (Map.Entry<String, Map<String, Entry>> root : roots.entrySet())
+         {
+            out.writeUTF(root.getKey());
+            out.writeInt(root.getValue().size());
+            for (Map.Entry<String, Entry> dir : root.getValue().entrySet())
+            {
+               out.writeUTF(dir.getKey());
+               out.writeLong(dir.getValue().mtime);
+               writeNames(out, dir.getValue().subdirs);
+               writeNames(out, dir.getValue().matches);
+            }
+         }
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+   }
+
+   private static String[] readNames(DataInputStream in, long limit) throws IOException
+   {
+      String[] names = new String[readCount(in, limit)];
+      for (int i = 0; i < names.length; i++)
+      {
+         names[i] = in.readUTF();
+      }
+      return names;
+   }
+
+   //A damaged count must not size a map or an array
+   private static int readCount(DataInputStream in, long limit) throws IOException
+   {
+      int count = in.readInt();
+      if (count < 0 || count > limit)
+      {
+         throw new IOException("bad count " + count);
+      }
+      return count;
+   }
+
+   private static void writeNames(DataOutputStream out, String[] names) throws IOException
+   {
+      out.writeInt(names.length);
+      for (String name : names)
+      {
+         out.writeUTF(name);
+      }
+   }
+
+   //Brings the index for root up to date, listing only directories that changed
+   public ScanStats rescan(ForkJoinPool pool, Path root)
+   {
+      long start = System.nanoTime();
+      String key = root.toAbsolutePath().normalize().toString();
+      Map<String, Entry> previous = roots.getOrDefault(key, Collections.<String, Entry>emptyMap());
+      Scan scan = new Scan(previous, System.currentTimeMillis() - MTIME_SLACK_MILLIS);
+      pool.invoke(new ScanTask(scan, new ArrayDeque<Path>(Collections.singleton(Paths.get(key)))));
+      roots.put(key, scan.current);
+      return new ScanStats(scan.listed.sum(), scan.reused.sum(), scan.matches.sum(), (System.nanoTime() - start) / 1_000_000);
+   }
+
+   //Every indexed match under root, as of the last rescan
+   public List<Path> matches(Path root)
+   {
+      Map<String, Entry> dirs = roots.getOrDefault(root.toAbsolutePath().normalize().toString(),
+            Collections.<String, Entry>emptyMap());
+      List<Path> list = new ArrayList<Path>();
+      for (Map.Entry<String, Entry> dir : dirs.entrySet())
+      {
+         for (String name : dir.getValue().matches)
+         {
+            list.add(Paths.get(dir.getKey(), name));
+         }
+      }
+      return list;
+   }
+
+   //State shared by the tasks of one rescan
+   private static final class Scan
+   {
+      final Map<String, Entry> previous;
+      final Map<String, Entry> current = new ConcurrentHashMap<String, Entry>();
+      final long trustBefore;
+      final LongAdder listed = new LongAdder(), reused = new LongAdder(), matches = new LongAdder();
+
+      Scan(Map<String, Entry> previous, long trustBefore)
+      {
+         this.previous = previous;
+         this.trustBefore = trustBefore;
+      }
+   }
+
+   //Same shape as NioFolderProcessor: a local stack of directories, split
+   //only when this task has done enough work and the pool is short of tasks.
+   private final class ScanTask extends RecursiveAction
+   {
+      private static final long serialVersionUID = 1L;
+      private final Scan scan;
+      private final ArrayDeque<Path> pending;
+
+      ScanTask(Scan scan, ArrayDeque<Path> pending)
+      {
+         this.scan = scan;
+         this.pending = pending;
+      }
+
+      @Override
+      protected void compute()
+      {
+         List<ScanTask> forked = new ArrayList<ScanTask>();
+         int sinceFork = 0;
+         while (!pending.isEmpty())
+         {
+            sinceFork += visit(pending.pop());
+            if (sinceFork >= NioFolderProcessor.DEFAULT_FORK_THRESHOLD && pending.size() > 1
+                  && getSurplusQueuedTaskCount() < 2)
+            {
+               ArrayDeque<Path> half = new ArrayDeque<Path>();
+               for (int n = pending.size() / 2; n > 0; n--)
+               {
+                  half.push(pending.pollLast());
+               }
+               ScanTask task = new ScanTask(scan, half);
+               task.fork();
+               forked.add(task);
+               sinceFork = 0;
+            }
+         }
+         for (ScanTask task : forked)
+         {
+            task.join();
+         }
+      }
+
+      //Indexes one directory and queues its subdirectories; returns the work done
+      private int visit(Path dir)
+      {
+         long mtime;
+         try
+         {
+            //read before listing: a change made while listing moves the mtime
+            //past what is stored, so it is picked up next time
+            mtime = Files.readAttributes(dir, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                  .lastModifiedTime().toMillis();
+         } catch (IOException e)
+         {
+            return 1; //removed since its parent was listed, or unreadable
+         }
+         String key = dir.toString();
+         Entry entry = scan.previous.get(key);
+         int work = 1;
+         if (entry != null && entry.mtime == mtime && mtime != UNTRUSTED)
+         {
+            scan.reused.increment();
+         } else
+         {
+            entry = list(dir, mtime < scan.trustBefore ? mtime : UNTRUSTED);
+            scan.listed.increment();
+            work += entry.subdirs.length + entry.matches.length;
+         }
+         scan.current.put(key, entry);
+         scan.matches.add(entry.matches.length);
+         for (String name : entry.subdirs)
+         {
+            pending.push(dir.resolve(name));
+         }
+         return work;
+      }
+
+      private Entry list(Path dir, long mtime)
+      {
+         List<String> subdirs = new ArrayList<String>();
+         List<String> found = new ArrayList<String>();
+         try
+         {
+            Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>()
+            {
+               @Override
+               public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+               {
+                  String name = file.getFileName().toString();
+                  if (attrs.isDirectory())
+                  {
+                     subdirs.add(name);
+                  } else if (name.endsWith(extension))
+                  {
+                     found.add(name);
+                  }
+                  return FileVisitResult.CONTINUE;
+               }
+
+               @Override
+               public FileVisitResult visitFileFailed(Path file, IOException e)
+               {
+                  return FileVisitResult.CONTINUE;
+               }
+            });
+         } catch (IOException e)
+         {
+            mtime = UNTRUSTED; //try again next time
+         }
+         return new Entry(mtime, subdirs.toArray(new String[0]), found.toArray(new String[0]));
+      }
+   }
+
+   //java DirectoryIndex indexFile extension root...
+   public static void main(String[] args) throws IOException
+   {
+      if (args.length < 3)
+      {
+         System.out.println("Usage: java DirectoryIndex indexFile extension root...");
+         return;
+      }
+      Path file = Paths.get(args[0]);
+      long start = System.nanoTime();
+      DirectoryIndex index = load(file, args[1]);
+      System.out.printf("Loaded %s in %d ms.\n", file, (System.nanoTime() - start) / 1_000_000);
+      ForkJoinPool pool = new ForkJoinPool();
+      for (int i = 2; i < args.length; i++)
+      {
+         System.out.printf("%s: %s\n", args[i], index.rescan(pool, Paths.get(args[i])));
+      }
+      pool.shutdown();
+      start = System.nanoTime();
+      index.save(file);
+      System.out.printf("Saved %s in %d ms.\n", file, (System.nanoTime() - start) / 1_000_000);
+   }
+}
@@ -0,0 +1,331 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+//Finds files with identical content under a root.
+//
+//Each stage only looks at what the previous one could not rule out:
+// 1. NioFolderProcessor lists the tree and groups regular files by size;
+// 2. files that share a size are hashed over their first and last 4 KB;
+// 3. files that still collide are hashed in full, reading them through
+//    memory-mapped windows of MAP_WINDOW bytes.
+//Files up to 8 KB are settled by stage 2, which already covers all of them.
+//
+//Size groups are independent, so they are spread over the fork-join pool
+//the way FolderProcessor spreads directories, and a group is passed to the
+//sink as soon as it is confirmed. Only ioPermits tasks read at once; a task
+//waiting for a permit does it through ForkJoinPool.managedBlock so the pool
+//can keep its CPU work going meanwhile.
+public class DuplicateFinder
+{
+   static final int EDGE = 4096;
+   static final long MAP_WINDOW = 64L << 20;
+
+   //A set of files with the same content
+   public static final class Group
+   {
+      public final long size;
+      public final List<Path> files;
+
+      Group(long size, List<Path> files)
+      {
+         this.size = size;
+         this.files = files;
+      }
+
+      //Bytes that could be freed by keeping one copy
+      public long wasted()
+      {
+         return size * (files.size() - 1);
+      }
+   }
+
+   private final ForkJoinPool pool;
+   private final Semaphore io;
+   private final LongAdder scanned = new LongAdder(), edgeHashed = new LongAdder(), fullHashed = new LongAdder();
+   private final LongAdder bytesRead = new LongAdder(), groups = new LongAdder(), wasted = new LongAdder();
+
+   public DuplicateFinder(ForkJoinPool pool, int ioPermits)
+   {
+      if (ioPermits < 1)
+      {
+         throw new IllegalArgumentException("ioPermits must be positive: " + ioPermits);
+      }
+      this.pool = pool;
+      this.io = new Semaphore(ioPermits);
+   }
+
+   //Reports every group of two or more identical files of at least minSize
+   //bytes; sink is called for one group at a time
+   public void find(Path root, long minSize, Consumer<Group> sink)
+   {
+      Map<Long, List<Path>> bySize = new ConcurrentHashMap<Long, List<Path>>();
+      pool.invoke(new NioFolderProcessor(root, "", (file, attrs) -> {
+         scanned.increment();
+         //the listing's own attributes: no second stat, and a symbolic link
+         //is not regular, so it is never reported as a copy of its target
+         if (attrs.isRegularFile() && attrs.size() >= minSize)
+         {
+            //the add must happen inside compute(): sinks run on many threads
+            bySize.compute(attrs.size(), (s, list) -> {
+               List<Path> l = list == null ? new ArrayList<Path>(2) : list;
+               l.add(file);
+               return l;
+            });
+         }
+      }));
+      List<Group> candidates = new ArrayList<Group>();
+      for (Map.Entry<Long, List<Path>> e : bySize.entrySet())
+      {
+         if (e.getValue().size() > 1)
+         {
+            candidates.add(new Group(e.getKey(), e.getValue()));
+         }
+      }
+      if (!candidates.isEmpty())
+      {
+         pool.invoke(new GroupsTask(candidates, 0, candidates.size(), sink));
+      }
+   }
+
+   public String stats()
+   {
+      return String.format("%d files scanned, %d edge-hashed, %d fully hashed, %d MB read, %d groups, %d MB wasted",
+            scanned.sum(), edgeHashed.sum(), fullHashed.sum(), bytesRead.sum() >> 20, groups.sum(), wasted.sum() >> 20);
+   }
+
+   //Settles size groups [from, to), splitting the range in halves
+   private final class GroupsTask extends RecursiveAction
+   {
+      private static final long serialVersionUID = 1L;
+      private final List<Group> candidates;
+      private final int from, to;
+      private final Consumer<Group> sink;
+
+      GroupsTask(List<Group> candidates, int from, int to, Consumer<Group> sink)
+      {
+         this.candidates = candidates;
+         this.from = from;
+         this.to = to;
+         this.sink = sink;
+      }
+
+      @Override
+      protected void compute()
+      {
+         if (to - from > 1)
+         {
+            int mid = (from + to) >>> 1;
+            invokeAll(new GroupsTask(candidates, from, mid, sink), new GroupsTask(candidates, mid, to, sink));
+            return;
+         }
+         Group group = candidates.get(from);
+         boolean whole = group.size <= 2 * EDGE;
+         for (List<Path> edgeMatch : split(group.files, group.size, false))
+         {
+            List<List<Path>> same = whole ? List.of(edgeMatch) : split(edgeMatch, group.size, true);
+            for (List<Path> files : same)
+            {
+               Group g = new Group(group.size, files);
+               groups.increment();
+               wasted.add(g.wasted());
+               synchronized (sink)
+               {
+                  sink.accept(g);
+               }
+            }
+         }
+      }
+   }
+
+   //Hashes files (in parallel) and returns the subsets of two or more with equal hashes
+   private List<List<Path>> split(List<Path> files, long size, boolean full)
+   {
+      ByteBuffer[] digests = new ByteBuffer[files.size()];
+      new HashTask(files, digests, size, full, 0, files.size()).invoke();
+      Map<ByteBuffer, List<Path>> byDigest = new HashMap<ByteBuffer, List<Path>>();
+      for (int i = 0; i < digests.length; i++)
+      {
+         if (digests[i] != null)
+         {
+            Path file = files.get(i);
+            byDigest.compute(digests[i], (d, list) -> {
+               List<Path> l = list == null ? new ArrayList<Path>(2) : list;
+               l.add(file);
+               return l;
+            });
+         }
+      }
+      List<List<Path>> result = new ArrayList<List<Path>>();
+      for (List<Path> same : byDigest.values())
+      {
+         if (same.size() > 1)
+         {
+            result.add(same);
+         }
+      }
+      (full ? fullHashed : edgeHashed).add(files.size());
+      return result;
+   }
+
+   //Fills digests[from, to) for the matching files; null where a file could not be read
+   private final class HashTask extends RecursiveAction
+   {
+      private static final long serialVersionUID = 1L;
+      private final List<Path> files;
+      private final ByteBuffer[] digests;
+      private final long size;
+      private final boolean full;
+      private final int from, to;
+
+      HashTask(List<Path> files, ByteBuffer[] digests, long size, boolean full, int from, int to)
+      {
+         this.files = files;
+         this.digests = digests;
+         this.size = size;
+         this.full = full;
+         this.from = from;
+         this.to = to;
+      }
+
+      @Override
+      protected void compute()
+      {
+         if (to - from > 1)
+         {
+            int mid = (from + to) >>> 1;
+            invokeAll(new HashTask(files, digests, size, full, from, mid),
+                  new HashTask(files, digests, size, full, mid, to));
+            return;
+         }
+         try
+         {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker()
+            {
+               private boolean acquired;
+
+               @Override
+               public boolean block() throws InterruptedException
+               {
+                  if (!acquired)
+                  {
+                     io.acquire();
+                     acquired = true;
+                  }
+                  return true;
+               }
+
+               @Override
+               public boolean isReleasable()
+               {
+                  return acquired || (acquired = io.tryAcquire());
+               }
+            });
+         } catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            return;
+         }
+         try
+         {
+            digests[from] = digest(files.get(from), size, full);
+         } catch (IOException e)
+         {
+            digests[from] = null;
+         } finally
+         {
+            io.release();
+         }
+      }
+   }
+
+   private ByteBuffer digest(Path file, long size, boolean full) throws IOException
+   {
+      MessageDigest md = newDigest();
+      try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ))
+      {
+         if (ch.size() != size)
+         {
+            return null; //changed since the scan
+         }
+         if (full)
+         {
+            for (long pos = 0; pos < size; pos += MAP_WINDOW)
+            {
+               MappedByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_WINDOW, size - pos));
+               md.update(window);
+            }
+            bytesRead.add(size);
+         } else
+         {
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(size, 2 * EDGE));
+            readFully(ch, buf, 0, Math.min(size, EDGE));
+            if (size > EDGE)
+            {
+               long tail = Math.max(EDGE, size - EDGE);
+               readFully(ch, buf, tail, size - tail);
+            }
+            buf.flip();
+            md.update(buf);
+            bytesRead.add(buf.limit());
+         }
+      }
+      return ByteBuffer.wrap(md.digest());
+   }
+
+   private static void readFully(FileChannel ch, ByteBuffer buf, long pos, long len) throws IOException
+   {
+      buf.limit(buf.position() + (int) len);
+      while (buf.hasRemaining())
+      {
+         int n = ch.read(buf, pos);
+         if (n < 0)
+         {
+            throw new IOException("file shrank");
+         }
+         pos += n;
+      }
+      buf.limit(buf.capacity());
+   }
+
+   private static MessageDigest newDigest()
+   {
+      try
+      {
+         return MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   //java DuplicateFinder root [minSize] [ioPermits]
+   public static void main(String[] args)
+   {
+      Path root = Paths.get(args.length > 0 ? args[0] : ".");
+      long minSize = args.length > 1 ? Long.parseLong(args[1]) : 1;
+      int permits = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+      DuplicateFinder finder = new DuplicateFinder(ForkJoinPool.commonPool(), permits);
+      long start = System.nanoTime();
+      finder.find(root, minSize, g -> System.out.printf("%d bytes x %d: %s\n", g.size, g.files.size(),
+            Arrays.toString(g.files.toArray())));
+      System.out.printf("%s in %d ms.\n", finder.stats(), (System.nanoTime() - start) / 1_000_000);
+   }
+}
@@ -0,0 +1,38 @@
+import java.util.concurrent.TimeUnit;
+
+//An elastic CustomThreadPool (1..32 workers) under bursts of blocking tasks.
+//Prints the number of live workers while a burst is running and after it,
+//when idle workers retire.
+public class ElasticPoolDemo
+{
+   public static void main(String[] args) throws InterruptedException
+   {
+      CustomThreadPool pool = new CustomThreadPool(1, 32, 1, TimeUnit.SECONDS);
+
+      for (int burst = 1; burst <= 2; burst++)
+      {
+         System.out.println("Burst " + burst);
+         for (int i = 0; i < 2000; i++)
+         {
+            pool.execute(() -> {
+               try
+               {
+                  TimeUnit.MILLISECONDS.sleep(5); //like waiting for a socket
+               } catch (InterruptedException e)
+               {
+                  System.out.println("InterruptedException caught");
+               }
+            });
+         }
+         for (int i = 0; i < 20; i++)
+         {
+            System.out.printf("  queued=%5d live=%2d target=%2d%n",
+                  pool.getQueueSize(), pool.getLiveWorkers(), pool.getTargetSize());
+            TimeUnit.MILLISECONDS.sleep(250);
+         }
+      }
+      pool.shutdown();
+      pool.awaitTermination(1, TimeUnit.MINUTES);
+      System.out.println(pool.getMetrics().snapshot());
+   }
+}
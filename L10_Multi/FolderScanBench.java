@@ -0,0 +1,75 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+//Compares FolderProcessor with NioFolderProcessor on a generated tree.
+//
+//   java FolderScanBench [dir] [files] [rounds]
+//
+//The tree (default 1,000,000 files) is created under dir on the first run
+//and reused afterwards. Directory sizes are deliberately uneven: a few wide
+//directories, many small ones and some deep chains, which is where forking
+//per directory costs the most. Every 10th file ends in ".log".
+public class FolderScanBench
+{
+   public static void main(String[] args) throws IOException
+   {
+      Path root = Paths.get(args.length > 0 ? args[0] : "scanbench-tree");
+      int files = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+      int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+      if (!Files.exists(root.resolve("done")))
+      {
+         long start = System.nanoTime();
+         build(root, files);
+         Files.createFile(root.resolve("done"));
+         System.out.printf("Built %d files in %d ms.\n", files, (System.nanoTime() - start) / 1_000_000);
+      }
+      ForkJoinPool pool = new ForkJoinPool();
+      System.out.printf("Parallelism: %d\n", pool.getParallelism());
+      for (int r = 1; r <= rounds; r++)
+      {
+         long start = System.nanoTime();
+         List<String> old = pool.invoke(new FolderProcessor(root.toString(), "log"));
+         long oldMs = (System.nanoTime() - start) / 1_000_000;
+
+         LongAdder found = new LongAdder();
+         start = System.nanoTime();
+         pool.invoke(new NioFolderProcessor(root, "log", p -> found.increment()));
+         long nioMs = (System.nanoTime() - start) / 1_000_000;
+
+         System.out.printf("Round %d: FolderProcessor %6d ms (%d found)   NioFolderProcessor %6d ms (%d found)\n",
+               r, oldMs, old.size(), nioMs, found.sum());
+      }
+      pool.shutdown();
+   }
+
+   //Roughly 1 in 100 directories gets 2000 files, the rest get 2..40, and
+   //every 50th directory starts a chain 20 levels deep.
+   private static void build(Path root, int files) throws IOException
+   {
+      int made = 0;
+      int dirNo = 0;
+      while (made < files)
+      {
+         Path dir = root.resolve("d" + (dirNo / 100)).resolve("d" + dirNo);
+         if (dirNo % 50 == 0)
+         {
+            for (int depth = 0; depth < 20; depth++)
+            {
+               dir = dir.resolve("deep" + depth);
+            }
+         }
+         Files.createDirectories(dir);
+         int count = dirNo % 100 == 7 ? 2000 : 2 + (dirNo * 7919) % 39;
+         for (int i = 0; i < count && made < files; i++, made++)
+         {
+            Files.createFile(dir.resolve("f" + i + (made % 10 == 0 ? ".log" : ".dat")));
+         }
+         dirNo++;
+      }
+   }
+}
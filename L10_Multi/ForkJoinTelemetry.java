@@ -0,0 +1,280 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+//Samples the counters of a ForkJoinPool at a fixed rate.
+//
+//Each sample (parallelism, pool size, active and running threads, queued
+//tasks and submissions, steal count) goes into a ring buffer of the last
+//capacity samples, together with the steal rate and the queue growth rate
+//since the previous sample. Every sample is also committed as the JFR event
+//ForkJoinPool.Sample (free when no recording has it enabled) and handed to
+//listeners; csv() and json() make listeners that stream one line per sample.
+//
+//The pool's getters only read counters (getQueuedTaskCount() walks the
+//work queues without locking), so the pool itself does no extra work; all
+//the cost is on the sampler thread.
+public class ForkJoinTelemetry implements AutoCloseable
+{
+   public static final String CSV_HEADER =
+         "time_ms,parallelism,pool_size,active,running,queued_tasks,queued_submissions,steals,steals_per_s,queue_growth_per_s";
+
+   public static final class Sample
+   {
+      public final long timeMillis;
+      public final int parallelism, poolSize, active, running;
+      public final long queuedTasks, queuedSubmissions, steals;
+      public final double stealsPerSecond, queueGrowthPerSecond;
+
+      Sample(long timeMillis, int parallelism, int poolSize, int active, int running, long queuedTasks,
+            long queuedSubmissions, long steals, double stealsPerSecond, double queueGrowthPerSecond)
+      {
+         this.timeMillis = timeMillis;
+         this.parallelism = parallelism;
+         this.poolSize = poolSize;
+         this.active = active;
+         this.running = running;
+         this.queuedTasks = queuedTasks;
+         this.queuedSubmissions = queuedSubmissions;
+         this.steals = steals;
+         this.stealsPerSecond = stealsPerSecond;
+         this.queueGrowthPerSecond = queueGrowthPerSecond;
+      }
+
+      public String toCsv()
+      {
+         return String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%d,%d,%d,%.1f,%.1f", timeMillis, parallelism, poolSize,
+               active, running, queuedTasks, queuedSubmissions, steals, stealsPerSecond, queueGrowthPerSecond);
+      }
+
+      public String toJson()
+      {
+         return String.format(Locale.ROOT,
+               "{\"time_ms\":%d,\"parallelism\":%d,\"pool_size\":%d,\"active\":%d,\"running\":%d,"
+                     + "\"queued_tasks\":%d,\"queued_submissions\":%d,\"steals\":%d,"
+                     + "\"steals_per_s\":%.1f,\"queue_growth_per_s\":%.1f}",
+               timeMillis, parallelism, poolSize, active, running, queuedTasks, queuedSubmissions, steals,
+               stealsPerSecond, queueGrowthPerSecond);
+      }
+
+      @Override
+      public String toString()
+      {
+         return toJson();
+      }
+   }
+
+   @Name("ForkJoinPool.Sample")
+   @Label("ForkJoinPool Sample")
+   @Category("Lesson 10")
+   @Description("Counters of one ForkJoinPool, sampled by ForkJoinTelemetry")
+   @StackTrace(false)
+   static class SampleEvent extends Event
+   {
+      @Label("Pool")
+      String pool;
+      @Label("Parallelism")
+      int parallelism;
+      @Label("Pool Size")
+      int poolSize;
+      @Label("Active Threads")
+      int active;
+      @Label("Running Threads")
+      int running;
+      @Label("Queued Tasks")
+      long queuedTasks;
+      @Label("Queued Submissions")
+      long queuedSubmissions;
+      @Label("Steal Count")
+      long steals;
+      @Label("Steals per Second")
+      double stealsPerSecond;
+      @Label("Queue Growth per Second")
+      double queueGrowthPerSecond;
+   }
+
+   private final ForkJoinPool pool;
+   private final String name;
+   //ring buffer of the last samples; next is where the following one goes
+   private final Sample[] ring;
+   private int next, count;
+   private final List<Consumer<Sample>> listeners = new CopyOnWriteArrayList<Consumer<Sample>>();
+   private ScheduledExecutorService sampler;
+   private long lastNanos;
+   private long lastSteals, lastQueued;
+
+   public ForkJoinTelemetry(ForkJoinPool pool, String name, int capacity)
+   {
+      if (capacity < 1)
+      {
+         throw new IllegalArgumentException("capacity must be positive: " + capacity);
+      }
+      this.pool = pool;
+      this.name = name;
+      this.ring = new Sample[capacity];
+   }
+
+   public void addListener(Consumer<Sample> listener)
+   {
+      listeners.add(listener);
+   }
+
+   //Takes a sample every period, on a daemon thread
+   public synchronized void start(long period, TimeUnit unit)
+   {
+      stop();
+      sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "fj-telemetry-" + name);
+         t.setDaemon(true);
+         return t;
+      });
+      sampler.scheduleAtFixedRate(this::sample, 0, period, unit);
+   }
+
+   public synchronized void stop()
+   {
+      if (sampler != null)
+      {
+         sampler.shutdownNow();
+         sampler = null;
+      }
+   }
+
+   @Override
+   public void close()
+   {
+      stop();
+   }
+
+   //Reads the pool's counters now; also called by the sampler thread
+   public Sample sample()
+   {
+      Sample s;
+      synchronized (ring)
+      {
+         long now = System.nanoTime();
+         long steals = pool.getStealCount();
+         long tasks = pool.getQueuedTaskCount();
+         long submissions = pool.getQueuedSubmissionCount();
+         long queued = tasks + submissions;
+         double seconds = (now - lastNanos) / 1e9;
+         boolean first = count == 0;
+         s = new Sample(System.currentTimeMillis(), pool.getParallelism(), pool.getPoolSize(),
+               pool.getActiveThreadCount(), pool.getRunningThreadCount(), tasks, submissions, steals,
+               first ? 0 : (steals - lastSteals) / seconds, first ? 0 : (queued - lastQueued) / seconds);
+         lastNanos = now;
+         lastSteals = steals;
+         lastQueued = queued;
+         ring[next] = s;
+         next = (next + 1) % ring.length;
+         count = Math.min(count + 1, ring.length);
+      }
+      SampleEvent event = new SampleEvent();
+      if (event.shouldCommit())
+      {
+         event.pool = name;
+         event.parallelism = s.parallelism;
+         event.poolSize = s.poolSize;
+         event.active = s.active;
+         event.running = s.running;
+         event.queuedTasks = s.queuedTasks;
+         event.queuedSubmissions = s.queuedSubmissions;
+         event.steals = s.steals;
+         event.stealsPerSecond = s.stealsPerSecond;
+         event.queueGrowthPerSecond = s.queueGrowthPerSecond;
+         event.commit();
+      }
+      //a listener that throws must not cancel the sampler's fixed-rate schedule
+      for (Consumer<Sample> listener : listeners)
+      {
+         try
+         {
+            listener.accept(s);
+         } catch (RuntimeException e)
+         {
+            System.out.println("Telemetry listener for " + name + " failed: " + e);
+         }
+      }
+      return s;
+   }
+
+   //Up to the last n samples, oldest first
+   public List<Sample> recent(int n)
+   {
+      synchronized (ring)
+      {
+         n = Math.min(n, count);
+         List<Sample> list = new ArrayList<Sample>(n);
+         for (int i = n; i > 0; i--)
+         {
+            list.add(ring[Math.floorMod(next - i, ring.length)]);
+         }
+         return list;
+      }
+   }
+
+   //Average steals per second over the last n samples
+   public double stealRate(int n)
+   {
+      return rate(recent(n + 1), true);
+   }
+
+   //Average queue growth per second over the last n samples (negative while draining)
+   public double queueGrowthRate(int n)
+   {
+      return rate(recent(n + 1), false);
+   }
+
+   private static double rate(List<Sample> samples, boolean steals)
+   {
+      if (samples.size() < 2)
+      {
+         return 0;
+      }
+      Sample first = samples.get(0), last = samples.get(samples.size() - 1);
+      double seconds = Math.max(1, last.timeMillis - first.timeMillis) / 1e3;
+      return steals ? (last.steals - first.steals) / seconds
+            : (last.queuedTasks + last.queuedSubmissions - first.queuedTasks - first.queuedSubmissions) / seconds;
+   }
+
+   //A listener writing CSV, header first
+   public static Consumer<Sample> csv(Appendable out)
+   {
+      append(out, CSV_HEADER);
+      return s -> append(out, s.toCsv());
+   }
+
+   //A listener writing one JSON object per line
+   public static Consumer<Sample> json(Appendable out)
+   {
+      return s -> append(out, s.toJson());
+   }
+
+   private static void append(Appendable out, String line)
+   {
+      try
+      {
+         synchronized (out)
+         {
+            out.append(line).append(System.lineSeparator());
+         }
+      } catch (IOException e)
+      {
+         throw new UncheckedIOException(e);
+      }
+   }
+}
@@ -16,24 +16,18 @@ public class ForkMain
       pool.execute(system);
       pool.execute(apps);
       pool.execute(documents);
-      //Write to the console information about the status of the pool every second
-      //until the three tasks have finished their execution.
-      do
-      {
-         System.out.printf("******************************************\n");
-         System.out.printf("Main: Parallelism: %d\n", pool.getParallelism());
-         System.out.printf("Main: Active Threads: %d\n", pool.getActiveThreadCount());
-         System.out.printf("Main: Task Count: %d\n", pool.getQueuedTaskCount());
-         System.out.printf("Main: Steal Count: %d\n", pool.getStealCount());
-         System.out.printf("******************************************\n");
-         try
-         {
-            TimeUnit.SECONDS.sleep(1);
-         } catch (InterruptedException e)
-         {
-            e.printStackTrace();
-         }
-      } while ((!system.isDone()) || (!apps.isDone()) || (!documents.isDone()));
+      //Sample the status of the pool every second with a ForkJoinTelemetry and write each sample to the
+      //console as a CSV line (ForkJoinTelemetry.json() writes JSON lines instead, and a JFR recording
+      //receives every sample as a ForkJoinPool.Sample event).
+      ForkJoinTelemetry telemetry = new ForkJoinTelemetry(pool, "ForkMain", 3600);
+      telemetry.addListener(ForkJoinTelemetry.csv(System.out));
+      telemetry.start(1, TimeUnit.SECONDS);
+      //Wait until the three tasks have finished their execution.
+      system.quietlyJoin();
+      apps.quietlyJoin();
+      documents.quietlyJoin();
+      telemetry.stop();
+      System.out.printf("Main: Steals per second (last minute): %.1f\n", telemetry.stealRate(60));
       //Shut down ForkJoinPool using the shutdown() method.
       pool.shutdown();
       //Write the number of results generated by each task to the console.
@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+//Runs tasks on a CustomThreadPool so that tasks with the same key run one
+//after another, in submission order, while different keys run in parallel.
+//
+//Each key with pending work has a mailbox: a queue of its tasks. A mailbox
+//is handed to the pool as one Runnable, at most once at a time, and runs a
+//batch of its tasks before going back to the end of the pool's queue, so a
+//busy key cannot starve the others. No thread is tied to a key, and the
+//mailbox is dropped as soon as it is empty, so millions of keys only cost
+//memory for the ones that have work queued.
+public class KeyedExecutor<K>
+{
+   private final CustomThreadPool pool;
+   private final int batch;
+   private final ConcurrentHashMap<K, Mailbox> mailboxes = new ConcurrentHashMap<K, Mailbox>();
+
+   public KeyedExecutor(CustomThreadPool pool)
+   {
+      this(pool, 64);
+   }
+
+   //batch: tasks of one key run before other keys get a turn
+   public KeyedExecutor(CustomThreadPool pool, int batch)
+   {
+      if (batch <= 0)
+      {
+         throw new IllegalArgumentException("batch must be positive: " + batch);
+      }
+      this.pool = pool;
+      this.batch = batch;
+   }
+
+   public void execute(K key, Runnable task)
+   {
+      if (task == null)
+      {
+         throw new NullPointerException("task");
+      }
+      //all scheduling decisions for a key happen inside compute(), under the
+      //map's lock for that key only, so a mailbox is never lost or run twice
+      boolean[] schedule = new boolean[1];
+      Mailbox box = mailboxes.compute(key, (k, mb) -> {
+         if (mb == null)
+         {
+            mb = new Mailbox(k);
+         }
+         mb.tasks.add(task);
+         if (!mb.scheduled)
+         {
+            mb.scheduled = true;
+            schedule[0] = true;
+         }
+         return mb;
+      });
+      if (schedule[0])
+      {
+         schedule(box);
+      }
+   }
+
+   public <T> Future<T> submit(K key, Callable<T> task)
+   {
+      FutureTask<T> future = new FutureTask<T>(task);
+      execute(key, future);
+      return future;
+   }
+
+   //keys that currently have queued or running tasks
+   public int getActiveKeys()
+   {
+      return mailboxes.size();
+   }
+
+   private void schedule(Mailbox box)
+   {
+      try
+      {
+         pool.execute(box);
+      } catch (RejectedExecutionException e)
+      {
+         cancel(drop(box));
+         throw e;
+      }
+   }
+
+   //The pool would not take box: forget its key and return the tasks it held.
+   //Done under the key's lock, so a task added concurrently is not lost
+   //silently and the next submission for the key schedules a new mailbox.
+   private List<Runnable> drop(Mailbox box)
+   {
+      List<Runnable> dropped = new ArrayList<Runnable>();
+      mailboxes.compute(box.key, (k, mb) -> {
+         if (mb != box)
+         {
+            return mb;
+         }
+         box.scheduled = false;
+         for (Runnable task; (task = box.tasks.poll()) != null;)
+         {
+            dropped.add(task);
+         }
+         return null;
+      });
+      return dropped;
+   }
+
+   //Whoever waits on a dropped submit() gets a CancellationException
+   private static void cancel(List<Runnable> dropped)
+   {
+      for (Runnable task : dropped)
+      {
+         if (task instanceof Future)
+         {
+            ((Future<?>) task).cancel(false);
+         }
+      }
+   }
+
+   private class Mailbox implements Runnable
+   {
+      final K key;
+      final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+      //guarded by the map's lock for key
+      boolean scheduled;
+
+      Mailbox(K key)
+      {
+         this.key = key;
+      }
+
+      public void run()
+      {
+         try
+         {
+            for (int i = 0; i < batch; i++)
+            {
+               Runnable task = tasks.poll();
+               if (task == null)
+               {
+                  break;
+               }
+               try
+               {
+                  task.run();
+               } catch (RuntimeException e)
+               {
+                  System.out.println("Task for key " + key + " failed: " + e.getMessage());
+               }
+            }
+         } finally
+         {
+            //also after an Error, or the key would stay scheduled forever
+            release();
+         }
+      }
+
+      //drop the mailbox if it is empty, otherwise queue it again
+      private void release()
+      {
+         boolean[] more = new boolean[1];
+         mailboxes.compute(key, (k, mb) -> {
+            if (tasks.isEmpty())
+            {
+               scheduled = false;
+               return null;
+            }
+            more[0] = true;
+            return mb;
+         });
+         if (more[0])
+         {
+            try
+            {
+               pool.execute(this);
+            } catch (RejectedExecutionException e)
+            {
+               List<Runnable> dropped = drop(this);
+               System.out.println("Pool is shut down, dropping " + dropped.size() + " tasks for key " + key);
+               cancel(dropped);
+            }
+         }
+      }
+   }
+}
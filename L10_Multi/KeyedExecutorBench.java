@@ -0,0 +1,73 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//1M keys, several tasks per key, submitted interleaved across keys.
+//Checks that every key saw its tasks in order and reports the throughput
+//of KeyedExecutor against plain CustomThreadPool.execute (no ordering).
+//
+//java KeyedExecutorBench [threads] [keys] [tasksPerKey]
+public class KeyedExecutorBench
+{
+   public static void main(String[] args) throws InterruptedException
+   {
+      int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+      int keys = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+      int perKey = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+      for (int pass = 0; pass < 2; pass++) //the first pass is warmup
+      {
+         double plain = run(threads, keys, perKey, false);
+         double keyed = run(threads, keys, perKey, true);
+         if (pass > 0)
+         {
+            System.out.printf("%d keys x %d tasks: unordered %.2f Mtasks/s, keyed %.2f Mtasks/s%n",
+                  keys, perKey, plain, keyed);
+         }
+      }
+   }
+
+   static double run(int threads, int keys, int perKey, boolean keyed) throws InterruptedException
+   {
+      CustomThreadPool pool = new CustomThreadPool(threads);
+      KeyedExecutor<Integer> executor = new KeyedExecutor<Integer>(pool);
+      int[] next = new int[keys]; //next sequence number expected per key
+      AtomicInteger outOfOrder = new AtomicInteger();
+      CountDownLatch done = new CountDownLatch(keys * perKey);
+
+      long begin = System.nanoTime();
+      for (int seq = 0; seq < perKey; seq++)
+      {
+         for (int key = 0; key < keys; key++)
+         {
+            int k = key;
+            int s = seq;
+            Runnable task = () -> {
+               //only one task of a key runs at a time, so no lock is needed
+               if (keyed && next[k] != s)
+               {
+                  outOfOrder.incrementAndGet();
+               }
+               next[k] = s + 1;
+               done.countDown();
+            };
+            if (keyed)
+            {
+               executor.execute(k, task);
+            } else
+            {
+               pool.execute(task);
+            }
+         }
+      }
+      done.await();
+      double rate = keys * perKey / ((System.nanoTime() - begin) / 1000.0);
+      pool.shutdown();
+      pool.awaitTermination(1, TimeUnit.MINUTES);
+      if (keyed)
+      {
+         System.out.println("Out of order: " + outOfOrder.get() + ", mailboxes left: " + executor.getActiveKeys());
+      }
+      return rate;
+   }
+}
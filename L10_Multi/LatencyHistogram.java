@@ -0,0 +1,159 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//Lock-free latency histogram with HDR-style log-linear buckets.
+//
+//Values below 64 get a bucket each; above that every power of two is split
+//into 32 sub-buckets, so a recorded value is off by at most ~3%. Recording
+//is one array increment; the counts are striped by thread so concurrent
+//workers rarely hit the same cache line.
+public class LatencyHistogram
+{
+   private static final int SUB_BITS = 5;
+   private static final int SUB_COUNT = 1 << SUB_BITS;            //32
+   private static final int LINEAR = SUB_COUNT * 2;                //64
+   private static final int BUCKETS = (62 - SUB_BITS + 2) * SUB_COUNT;
+
+   private final AtomicLongArray[] stripes;
+   private final int mask;
+   private final LongAdder sum = new LongAdder();
+   private final AtomicLong max = new AtomicLong();
+
+   public LatencyHistogram()
+   {
+      int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+      stripes = new AtomicLongArray[n];
+      for (int i = 0; i < n; i++)
+      {
+         stripes[i] = new AtomicLongArray(BUCKETS);
+      }
+      mask = n - 1;
+   }
+
+   //value in any unit (CustomThreadPool records nanoseconds); negatives count as 0
+   public void record(long value)
+   {
+      if (value < 0)
+      {
+         value = 0;
+      }
+      stripes[(int) Thread.currentThread().getId() & mask].incrementAndGet(index(value));
+      sum.add(value);
+      long m;
+      while (value > (m = max.get()) && !max.compareAndSet(m, value))
+      {
+         //retry with the new maximum
+      }
+   }
+
+   static int index(long v)
+   {
+      if (v < LINEAR)
+      {
+         return (int) v;
+      }
+      int msb = 63 - Long.numberOfLeadingZeros(v);
+      int shift = msb - SUB_BITS;
+      return (shift + 1) * SUB_COUNT + (int) (v >>> shift) - SUB_COUNT;
+   }
+
+   //highest value that falls into bucket i
+   static long highestValue(int i)
+   {
+      if (i < LINEAR)
+      {
+         return i;
+      }
+      int shift = i / SUB_COUNT - 1;
+      long sub = i % SUB_COUNT + SUB_COUNT;
+      return ((sub + 1) << shift) - 1;
+   }
+
+   //Merged copy of the counts; recording may continue meanwhile
+   public Snapshot snapshot()
+   {
+      long[] counts = new long[BUCKETS];
+      for (AtomicLongArray s : stripes)
+      {
+         for (int i = 0; i < BUCKETS; i++)
+         {
+            counts[i] += s.get(i);
+         }
+      }
+      return new Snapshot(counts, sum.sum(), max.get());
+   }
+
+   public static class Snapshot
+   {
+      private final long[] counts;
+      private final long count;
+      private final long sum;
+      private final long max;
+
+      Snapshot(long[] counts, long sum, long max)
+      {
+         long n = 0;
+         for (long c : counts)
+         {
+            n += c;
+         }
+         this.counts = counts;
+         this.count = n;
+         this.sum = sum;
+         this.max = max;
+      }
+
+      public long getCount()
+      {
+         return count;
+      }
+
+      public long getMax()
+      {
+         return max;
+      }
+
+      public double getMean()
+      {
+         return count == 0 ? 0 : (double) sum / count;
+      }
+
+      //What was recorded between earlier and this snapshot. The max is
+      //not windowed; it is the highest bucket with new values.
+      public Snapshot minus(Snapshot earlier)
+      {
+         long[] diff = new long[counts.length];
+         long highest = 0;
+         for (int i = 0; i < counts.length; i++)
+         {
+            diff[i] = counts[i] - earlier.counts[i];
+            if (diff[i] > 0)
+            {
+               highest = Math.min(highestValue(i), max);
+            }
+         }
+         return new Snapshot(diff, sum - earlier.sum, highest);
+      }
+
+      //p in [0, 100]; upper bound of the bucket holding that rank
+      public long percentile(double p)
+      {
+         if (count == 0)
+         {
+            return 0;
+         }
+         long rank = Math.max(1, (long) Math.ceil(p / 100 * count));
+         long seen = 0;
+         for (int i = 0; i < counts.length; i++)
+         {
+            seen += counts[i];
+            if (seen >= rank)
+            {
+               return Math.min(highestValue(i), max);
+            }
+         }
+         return max;
+      }
+   }
+}
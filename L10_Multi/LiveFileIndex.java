@@ -0,0 +1,282 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+//A set of matching files kept current from WatchService events.
+//
+//One NioFolderProcessor scan fills the set and registers every directory
+//(each directory is registered before it is listed, so nothing created in
+//between is lost). After that a watcher thread applies events:
+// - a created file is added if it matches, a created directory is walked;
+// - a deleted entry is removed together with everything under it;
+// - an OVERFLOW means events for that directory were lost, so only that
+//   directory's subtree is walked again and the set reconciled with it.
+//Queries read a ConcurrentSkipListSet of path strings, so they never touch
+//the disk; matchesUnder() is a sorted range view.
+//
+//Each watched directory costs a watch descriptor; on Linux large trees may
+//need fs.inotify.max_user_watches raised.
+public class LiveFileIndex implements Closeable
+{
+   private final Path root;
+   private final String extension;
+   private final ForkJoinPool pool;
+   private final WatchService watcher;
+   private final ConcurrentSkipListSet<String> files = new ConcurrentSkipListSet<String>();
+   private final ConcurrentHashMap<WatchKey, Path> watched = new ConcurrentHashMap<WatchKey, Path>();
+   private final Thread eventThread;
+   private volatile long eventsApplied, overflows;
+
+   public LiveFileIndex(Path root, String extension, ForkJoinPool pool) throws IOException
+   {
+      this.root = root.toAbsolutePath().normalize();
+      this.extension = extension;
+      this.pool = pool;
+      this.watcher = this.root.getFileSystem().newWatchService();
+      walk(this.root, files::add);
+      eventThread = new Thread(this::processEvents, "LiveFileIndex-" + this.root.getFileName());
+      eventThread.setDaemon(true);
+      eventThread.start();
+   }
+
+   public int size()
+   {
+      return files.size();
+   }
+
+   public boolean contains(Path file)
+   {
+      return files.contains(file.toAbsolutePath().normalize().toString());
+   }
+
+   //Live, sorted view of the matches below dir
+   public NavigableSet<String> matchesUnder(Path dir)
+   {
+      String prefix = dir.toAbsolutePath().normalize().toString() + File.separator;
+      return files.subSet(prefix, true, prefix + Character.MAX_VALUE, false);
+   }
+
+   public List<Path> snapshot()
+   {
+      List<Path> list = new ArrayList<Path>(files.size());
+      for (String f : files)
+      {
+         list.add(Paths.get(f));
+      }
+      return list;
+   }
+
+   public int getWatchedDirectories()
+   {
+      return watched.size();
+   }
+
+   public long getEventsApplied()
+   {
+      return eventsApplied;
+   }
+
+   public long getOverflows()
+   {
+      return overflows;
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      watcher.close();
+      eventThread.interrupt();
+   }
+
+   //Registers and scans dir and everything under it, feeding matches to sink
+   private void walk(Path dir, Consumer<String> sink)
+   {
+      pool.invoke(new NioFolderProcessor(dir, extension, p -> sink.accept(p.toString()), this::register));
+   }
+
+   private void register(Path dir)
+   {
+      try
+      {
+         WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+               StandardWatchEventKinds.ENTRY_DELETE);
+         watched.put(key, dir);
+      } catch (IOException e)
+      {
+         //gone already, or not readable; its parent's events still cover it
+      } catch (ClosedWatchServiceException e)
+      {
+         //closing
+      }
+   }
+
+   private void processEvents()
+   {
+      try
+      {
+         while (true)
+         {
+            WatchKey key = watcher.take();
+            //Drain whatever else is ready, so that after a burst every
+            //overflowed directory is walked once, outermost first.
+            List<WatchKey> batch = new ArrayList<WatchKey>();
+            for (; key != null; key = watcher.poll())
+            {
+               batch.add(key);
+            }
+            List<Path> overflowed = new ArrayList<Path>();
+            for (WatchKey k : batch)
+            {
+               Path dir = watched.get(k);
+               for (WatchEvent<?> event : k.pollEvents())
+               {
+                  if (dir == null)
+                  {
+                     continue;
+                  }
+                  if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                  {
+                     overflowed.add(dir);
+                  } else
+                  {
+                     apply(dir.resolve((Path) event.context()), event.kind());
+                  }
+                  eventsApplied++;
+               }
+               if (!k.reset())
+               {
+                  watched.remove(k);
+               }
+            }
+            rewalk(overflowed);
+         }
+      } catch (InterruptedException | ClosedWatchServiceException e)
+      {
+         //closed
+      }
+   }
+
+   private void apply(Path path, WatchEvent.Kind<?> kind)
+   {
+      if (kind == StandardWatchEventKinds.ENTRY_CREATE)
+      {
+         if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))
+         {
+            walk(path, files::add);
+         } else if (path.getFileName().toString().endsWith(extension))
+         {
+            files.add(path.toString());
+         }
+      } else if (kind == StandardWatchEventKinds.ENTRY_DELETE)
+      {
+         files.remove(path.toString());
+         matchesUnder(path).clear();
+      }
+   }
+
+   //Walks each overflowed subtree again and makes the set agree with it
+   private void rewalk(List<Path> dirs)
+   {
+      dirs.sort(null);
+      Path last = null;
+      for (Path dir : dirs)
+      {
+         if (last != null && dir.startsWith(last))
+         {
+            continue; //already covered by an enclosing directory
+         }
+         last = dir;
+         overflows++;
+         Set<String> fresh = ConcurrentHashMap.newKeySet();
+         if (Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS))
+         {
+            walk(dir, fresh::add);
+         }
+         //apply only the difference, adding before removing, so a reader
+         //never misses a file that is still on disk
+         files.addAll(fresh);
+         matchesUnder(dir).removeIf(f -> !fresh.contains(f));
+      }
+   }
+
+   //Builds a live index over a temporary tree, changes the tree and queries it
+   public static void main(String[] args) throws IOException, InterruptedException
+   {
+      Path root = Files.createTempDirectory("liveindex");
+      for (int d = 0; d < 50; d++)
+      {
+         Path dir = Files.createDirectories(root.resolve("d" + d).resolve("sub"));
+         for (int f = 0; f < 100; f++)
+         {
+            Files.createFile(dir.resolve("f" + f + (f % 10 == 0 ? ".log" : ".dat")));
+         }
+      }
+      try (LiveFileIndex index = new LiveFileIndex(root, "log", ForkJoinPool.commonPool()))
+      {
+         System.out.printf("Initial scan: %d matches, %d directories watched\n", index.size(),
+               index.getWatchedDirectories());
+         Files.createFile(root.resolve("d1").resolve("sub").resolve("new.log"));
+         Path added = Files.createDirectories(root.resolve("d2").resolve("added").resolve("deeper"));
+         Files.createFile(added.resolve("a.log"));
+         Files.delete(root.resolve("d3").resolve("sub").resolve("f0.log"));
+         //expected: 500 + 1 + 1 - 1
+         for (int i = 0; i < 50 && index.size() != 501; i++)
+         {
+            TimeUnit.MILLISECONDS.sleep(100);
+         }
+         System.out.printf("After changes: %d matches (expected 501), %d events applied\n", index.size(),
+               index.getEventsApplied());
+
+         int queries = 1_000_000;
+         Path probe = root.resolve("d7").resolve("sub").resolve("f20.log");
+         long start = System.nanoTime();
+         int hits = 0;
+         for (int i = 0; i < queries; i++)
+         {
+            if (index.contains(probe))
+            {
+               hits++;
+            }
+         }
+         System.out.printf("contains(): %.2f us per query (%d hits)\n", (System.nanoTime() - start) / 1e3 / queries, hits);
+         start = System.nanoTime();
+         int under = index.matchesUnder(root.resolve("d7")).size();
+         System.out.printf("matchesUnder(d7): %d files in %.2f us\n", under, (System.nanoTime() - start) / 1e3);
+      } finally
+      {
+         try (Stream<Path> all = Files.walk(root))
+         {
+            all.sorted(Comparator.reverseOrder()).forEach(p -> {
+               try
+               {
+                  Files.delete(p);
+               } catch (IOException e)
+               {
+                  throw new UncheckedIOException(e);
+               }
+            });
+         }
+      }
+   }
+}
@@ -0,0 +1,56 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+//Handoff throughput of CustomThreadPool with and without metrics, to check
+//that instrumentation costs only a few percent. Tasks are empty, so this is
+//the worst case: all of the measured time is pool overhead.
+//
+//java MetricsOverheadBench [threads] [tasks]
+public class MetricsOverheadBench
+{
+   public static void main(String[] args) throws Exception
+   {
+      int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+      int tasks = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+      //alternate the order and keep the best run of each, because on a busy
+      //machine the noise between runs is larger than the effect measured
+      double plain = 0;
+      double metered = 0;
+      for (int pass = 0; pass < 8; pass++)
+      {
+         if (pass % 2 == 0)
+         {
+            plain = Math.max(plain, run(threads, tasks, false));
+            metered = Math.max(metered, run(threads, tasks, true));
+         } else
+         {
+            metered = Math.max(metered, run(threads, tasks, true));
+            plain = Math.max(plain, run(threads, tasks, false));
+         }
+      }
+      System.out.printf("plain %.2f Mtasks/s, with metrics %.2f Mtasks/s, overhead %.1f%%%n",
+            plain, metered, (plain - metered) / plain * 100);
+   }
+
+   static double run(int threads, int tasks, boolean withMetrics) throws Exception
+   {
+      CustomThreadPool pool = new CustomThreadPool(threads);
+      if (withMetrics)
+      {
+         pool.enableMetrics();
+      }
+      CountDownLatch done = new CountDownLatch(tasks);
+      Runnable task = done::countDown;
+      long begin = System.nanoTime();
+      for (int i = 0; i < tasks; i++)
+      {
+         pool.execute(task);
+      }
+      done.await();
+      double rate = tasks / ((System.nanoTime() - begin) / 1000.0);
+      pool.shutdown();
+      pool.awaitTermination(1, TimeUnit.MINUTES);
+      return rate;
+   }
+}
@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+//An NIO version of FolderProcessor.
+//
+//FolderProcessor forks one task per directory, lists every directory with
+//File.listFiles() (a File object and a stat per entry) and copies every
+//child's result list into its parent. This task instead:
+// - reads each directory with Files.walkFileTree(dir, ..., 1, visitor), which
+//   hands over the BasicFileAttributes the OS returned with the listing
+//   (free on Windows, one lstat per entry elsewhere);
+// - walks directories depth-first from a local stack and forks only when it
+//   has looked at more than forkThreshold entries since its last fork and the
+//   pool is short of queued work, so small subtrees never pay for a task;
+// - passes every match straight to a thread-safe sink instead of building
+//   and concatenating lists.
+public class NioFolderProcessor extends RecursiveAction
+{
+   private static final long serialVersionUID = 1L;
+   public static final int DEFAULT_FORK_THRESHOLD = 256;
+
+   //Directories this task still has to read; the head is the next one.
+   private final ArrayDeque<Path> pending;
+   private final String extension;
+   private final BiConsumer<Path, BasicFileAttributes> sink;
+   private final int forkThreshold;
+   //Called with every directory just before it is listed, or null
+   private final Consumer<Path> onDirectory;
+
+   public NioFolderProcessor(Path root, String extension, Consumer<Path> sink)
+   {
+      this(root, extension, sink, DEFAULT_FORK_THRESHOLD);
+   }
+
+   public NioFolderProcessor(Path root, String extension, Consumer<Path> sink, int forkThreshold)
+   {
+      this(new ArrayDeque<Path>(Collections.singleton(root)), extension, (file, attrs) -> sink.accept(file),
+            forkThreshold, null);
+   }
+
+   //sink also gets the attributes read with the listing (of the link itself
+   //for a symbolic link), so it need not stat the file again
+   public NioFolderProcessor(Path root, String extension, BiConsumer<Path, BasicFileAttributes> sink)
+   {
+      this(new ArrayDeque<Path>(Collections.singleton(root)), extension, sink, DEFAULT_FORK_THRESHOLD, null);
+   }
+
+   //onDirectory sees each directory before its entries are read, e.g. to
+   //register it with a WatchService without missing entries added meanwhile
+   public NioFolderProcessor(Path root, String extension, Consumer<Path> sink, Consumer<Path> onDirectory)
+   {
+      this(new ArrayDeque<Path>(Collections.singleton(root)), extension, (file, attrs) -> sink.accept(file),
+            DEFAULT_FORK_THRESHOLD, onDirectory);
+   }
+
+   private NioFolderProcessor(ArrayDeque<Path> pending, String extension, BiConsumer<Path, BasicFileAttributes> sink,
+         int forkThreshold, Consumer<Path> onDirectory)
+   {
+      if (forkThreshold < 1)
+      {
+         throw new IllegalArgumentException("forkThreshold must be positive: " + forkThreshold);
+      }
+      this.pending = pending;
+      this.extension = extension;
+      this.sink = sink;
+      this.forkThreshold = forkThreshold;
+      this.onDirectory = onDirectory;
+   }
+
+   //Scans root in pool and returns every match
+   public static List<Path> scan(ForkJoinPool pool, Path root, String extension)
+   {
+      Queue<Path> found = new ConcurrentLinkedQueue<Path>();
+      pool.invoke(new NioFolderProcessor(root, extension, found::add));
+      return new ArrayList<Path>(found);
+   }
+
+   @Override
+   protected void compute()
+   {
+      List<NioFolderProcessor> forked = new ArrayList<NioFolderProcessor>();
+      Lister lister = new Lister();
+      while (!pending.isEmpty())
+      {
+         lister.list(pending.pop());
+         //Hand the oldest (shallowest, so probably largest) half of the
+         //pending directories to a new task once this one has done enough
+         //work to pay for it and idle workers could use it.
+         if (lister.sinceFork >= forkThreshold && pending.size() > 1 && getSurplusQueuedTaskCount() < 2)
+         {
+            ArrayDeque<Path> half = new ArrayDeque<Path>();
+            for (int n = pending.size() / 2; n > 0; n--)
+            {
+               half.push(pending.pollLast());
+            }
+            NioFolderProcessor task = new NioFolderProcessor(half, extension, sink, forkThreshold, onDirectory);
+            task.fork();
+            forked.add(task);
+            lister.sinceFork = 0;
+         }
+      }
+      for (NioFolderProcessor task : forked)
+      {
+         task.join();
+      }
+   }
+
+   //Reads one directory level; subdirectories go onto pending
+   private final class Lister implements FileVisitor<Path>
+   {
+      int sinceFork;
+
+      void list(Path dir)
+      {
+         try
+         {
+            if (onDirectory != null)
+            {
+               onDirectory.accept(dir);
+            }
+            Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), 1, this);
+         } catch (IOException e)
+         {
+            //unreadable directories are skipped, as listFiles() returning null is
+         }
+      }
+
+      @Override
+      public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs)
+      {
+         return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+      {
+         sinceFork++;
+         if (attrs.isDirectory())
+         {
+            pending.push(file);
+         } else if (file.getFileName().toString().endsWith(extension))
+         {
+            sink.accept(file, attrs);
+         }
+         return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException e)
+      {
+         return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path d, IOException e)
+      {
+         return FileVisitResult.CONTINUE;
+      }
+   }
+
+   public static void main(String[] args)
+   {
+      Path root = Paths.get(args.length > 0 ? args[0] : ".");
+      String extension = args.length > 1 ? args[1] : "log";
+      long start = System.nanoTime();
+      List<Path> found = scan(ForkJoinPool.commonPool(), root, extension);
+      System.out.printf("%s: %d files found in %d ms.\n", root, found.size(), (System.nanoTime() - start) / 1_000_000);
+   }
+}
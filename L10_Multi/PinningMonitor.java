@@ -0,0 +1,86 @@
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+//Reports where virtual threads pin their carrier thread.
+//
+//A virtual thread that blocks inside a synchronized block (or a native
+//frame) cannot unmount, so it keeps its carrier busy. The JVM reports
+//this as the JFR event jdk.VirtualThreadPinned (Java 21+); this class
+//streams those events in-process and counts them per code location,
+//so the offending synchronized sections can be listed at any time.
+//On a JVM without virtual threads the event never fires and the report
+//stays empty.
+public class PinningMonitor implements AutoCloseable
+{
+   private static final String EVENT = "jdk.VirtualThreadPinned";
+
+   private final RecordingStream stream;
+   private final Map<String, LongAdder> counts = new ConcurrentHashMap<String, LongAdder>();
+   private final Map<String, LongAdder> nanos = new ConcurrentHashMap<String, LongAdder>();
+
+   //threshold: only pins that block at least this long are reported
+   public PinningMonitor(Duration threshold)
+   {
+      stream = new RecordingStream();
+      stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+      stream.onEvent(EVENT, this::record);
+      stream.startAsync();
+   }
+
+   private void record(RecordedEvent event)
+   {
+      String where = location(event.getStackTrace());
+      counts.computeIfAbsent(where, k -> new LongAdder()).increment();
+      nanos.computeIfAbsent(where, k -> new LongAdder()).add(event.getDuration().toNanos());
+   }
+
+   //first frame outside java.* / jdk.*, i.e. the user code that pinned
+   private static String location(RecordedStackTrace trace)
+   {
+      if (trace == null)
+      {
+         return "<no stack trace>";
+      }
+      for (RecordedFrame frame : trace.getFrames())
+      {
+         String type = frame.getMethod().getType().getName();
+         if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun."))
+         {
+            return type + "." + frame.getMethod().getName() + " line " + frame.getLineNumber();
+         }
+      }
+      return "<JDK internal>";
+   }
+
+   //location -> number of pinning events seen so far
+   public Map<String, Long> pinCounts()
+   {
+      Map<String, Long> result = new TreeMap<String, Long>();
+      counts.forEach((k, v) -> result.put(k, v.sum()));
+      return result;
+   }
+
+   public String report()
+   {
+      if (counts.isEmpty())
+      {
+         return "No carrier thread pinning reported.";
+      }
+      StringBuilder sb = new StringBuilder("Carrier thread pinning:\n");
+      pinCounts().forEach((where, n) -> sb.append(String.format("  %8d pins, %10.3f ms blocked  %s%n",
+            n, nanos.get(where).sum() / 1e6, where)));
+      return sb.toString();
+   }
+
+   public void close()
+   {
+      stream.close();
+   }
+}
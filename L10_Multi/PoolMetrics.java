@@ -0,0 +1,245 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+//Counters and latency histograms of one CustomThreadPool.
+//Created by CustomThreadPool.enableMetrics(); can be registered as a JMX
+//MBean and polled periodically through snapshot()/startReporting().
+//
+//Counts are exact. Queue wait and run time are timed for one task in
+//sampleEvery (System.nanoTime() is not free), which keeps the overhead at
+//a few percent even for empty tasks; the histograms stay representative.
+public class PoolMetrics implements PoolMetricsMBean
+{
+   //per-worker counters sit 8 longs (one cache line) apart
+   private static final int STRIDE = 8;
+
+   final LatencyHistogram queueWait = new LatencyHistogram();
+   final LatencyHistogram runTime = new LatencyHistogram();
+   private final LongAdder submitted = new LongAdder();
+   //tasks run on virtual threads; worker threads count in perWorker
+   private final LongAdder completedVirtual = new LongAdder();
+   private final LongAdder failedVirtual = new LongAdder();
+   private final AtomicLongArray perWorker; //[completed, failed] per worker
+   private final int workers;
+   private final int sampleEvery;
+   private final IntSupplier queueDepth;
+   private ObjectName objectName;
+   private ScheduledExecutorService reporter;
+
+   PoolMetrics(int workers, IntSupplier queueDepth, int sampleEvery)
+   {
+      if (sampleEvery <= 0)
+      {
+         throw new IllegalArgumentException("sampleEvery must be positive: " + sampleEvery);
+      }
+      this.workers = workers;
+      this.sampleEvery = sampleEvery;
+      this.queueDepth = queueDepth;
+      perWorker = new AtomicLongArray(Math.max(workers, 1) * STRIDE);
+   }
+
+   //counts the task; true if this one should be timed
+   boolean taskSubmitted()
+   {
+      submitted.increment();
+      return sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+   }
+
+   void taskTimed(long waitNanos, long runNanos)
+   {
+      queueWait.record(waitNanos);
+      runTime.record(runNanos);
+   }
+
+   //worker is the worker index, or -1 for a virtual thread
+   void taskDone(int worker, boolean ok)
+   {
+      if (worker >= 0)
+      {
+         //only the worker itself writes its slots: no atomic increment needed
+         int i = worker * STRIDE + (ok ? 0 : 1);
+         perWorker.lazySet(i, perWorker.get(i) + 1);
+      } else if (ok)
+      {
+         completedVirtual.increment();
+      } else
+      {
+         failedVirtual.increment();
+      }
+   }
+
+   public int getQueueDepth()
+   {
+      return queueDepth.getAsInt();
+   }
+
+   public long getSubmitted()
+   {
+      return submitted.sum();
+   }
+
+   public long getCompleted()
+   {
+      return completedVirtual.sum() + total(0);
+   }
+
+   public long getFailed()
+   {
+      return failedVirtual.sum() + total(1);
+   }
+
+   private long total(int offset)
+   {
+      long n = 0;
+      for (int i = 0; i < workers; i++)
+      {
+         n += perWorker.get(i * STRIDE + offset);
+      }
+      return n;
+   }
+
+   public long getQueueWaitP50Micros()
+   {
+      return queueWait.snapshot().percentile(50) / 1000;
+   }
+
+   public long getQueueWaitP99Micros()
+   {
+      return queueWait.snapshot().percentile(99) / 1000;
+   }
+
+   public long getQueueWaitMaxMicros()
+   {
+      return queueWait.snapshot().getMax() / 1000;
+   }
+
+   public long getRunTimeP50Micros()
+   {
+      return runTime.snapshot().percentile(50) / 1000;
+   }
+
+   public long getRunTimeP99Micros()
+   {
+      return runTime.snapshot().percentile(99) / 1000;
+   }
+
+   public long getRunTimeMaxMicros()
+   {
+      return runTime.snapshot().getMax() / 1000;
+   }
+
+   public long[] getCompletedPerWorker()
+   {
+      return perWorker(0);
+   }
+
+   public long[] getFailedPerWorker()
+   {
+      return perWorker(1);
+   }
+
+   private long[] perWorker(int offset)
+   {
+      long[] result = new long[workers];
+      for (int i = 0; i < workers; i++)
+      {
+         result[i] = perWorker.get(i * STRIDE + offset);
+      }
+      return result;
+   }
+
+   //Consistent-enough view of everything at one moment
+   public Snapshot snapshot()
+   {
+      return new Snapshot(System.currentTimeMillis(), getQueueDepth(), getSubmitted(), getCompleted(),
+            getFailed(), queueWait.snapshot(), runTime.snapshot(), getCompletedPerWorker(), getFailedPerWorker());
+   }
+
+   //Hands a snapshot to the consumer every period, on a daemon thread
+   public synchronized void startReporting(long period, TimeUnit unit, Consumer<Snapshot> consumer)
+   {
+      stopReporting();
+      reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "pool-metrics-reporter");
+         t.setDaemon(true);
+         return t;
+      });
+      reporter.scheduleAtFixedRate(() -> consumer.accept(snapshot()), period, period, unit);
+   }
+
+   public synchronized void stopReporting()
+   {
+      if (reporter != null)
+      {
+         reporter.shutdownNow();
+         reporter = null;
+      }
+   }
+
+   //Registers this object as CustomThreadPool:name=<name> on the platform MBean server
+   public synchronized void registerMBean(String name) throws JMException
+   {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      objectName = new ObjectName("CustomThreadPool:name=" + ObjectName.quote(name));
+      server.registerMBean(this, objectName);
+   }
+
+   public synchronized void unregisterMBean()
+   {
+      if (objectName == null)
+      {
+         return;
+      }
+      try
+      {
+         ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      } catch (JMException e)
+      {
+         System.out.println("Could not unregister " + objectName + ": " + e.getMessage());
+      }
+      objectName = null;
+   }
+
+   public static class Snapshot
+   {
+      public final long timeMillis;
+      public final int queueDepth;
+      public final long submitted, completed, failed;
+      public final LatencyHistogram.Snapshot queueWait, runTime;
+      public final long[] completedPerWorker, failedPerWorker;
+
+      Snapshot(long timeMillis, int queueDepth, long submitted, long completed, long failed,
+            LatencyHistogram.Snapshot queueWait, LatencyHistogram.Snapshot runTime,
+            long[] completedPerWorker, long[] failedPerWorker)
+      {
+         this.timeMillis = timeMillis;
+         this.queueDepth = queueDepth;
+         this.submitted = submitted;
+         this.completed = completed;
+         this.failed = failed;
+         this.queueWait = queueWait;
+         this.runTime = runTime;
+         this.completedPerWorker = completedPerWorker;
+         this.failedPerWorker = failedPerWorker;
+      }
+
+      public String toString()
+      {
+         return String.format("queue=%d submitted=%d completed=%d failed=%d "
+               + "wait p50/p99/max=%d/%d/%d us run p50/p99/max=%d/%d/%d us",
+               queueDepth, submitted, completed, failed,
+               queueWait.percentile(50) / 1000, queueWait.percentile(99) / 1000, queueWait.getMax() / 1000,
+               runTime.percentile(50) / 1000, runTime.percentile(99) / 1000, runTime.getMax() / 1000);
+      }
+   }
+}
@@ -0,0 +1,27 @@
+//JMX view of a CustomThreadPool's PoolMetrics. Times are in microseconds.
+public interface PoolMetricsMBean
+{
+   int getQueueDepth();
+
+   long getSubmitted();
+
+   long getCompleted();
+
+   long getFailed();
+
+   long getQueueWaitP50Micros();
+
+   long getQueueWaitP99Micros();
+
+   long getQueueWaitMaxMicros();
+
+   long getRunTimeP50Micros();
+
+   long getRunTimeP99Micros();
+
+   long getRunTimeMaxMicros();
+
+   long[] getCompletedPerWorker();
+
+   long[] getFailedPerWorker();
+}
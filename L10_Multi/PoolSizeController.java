@@ -0,0 +1,87 @@
+import java.util.concurrent.TimeUnit;
+
+//Grows and shrinks an elastic CustomThreadPool, in the spirit of the .NET
+//thread pool's hill climbing.
+//
+//Every interval it looks at the throughput (tasks finished per second) and
+//the 90th percentile queue wait of that interval:
+// - nothing queued and waits are short: leave the size alone, idle workers
+//   retire by themselves after the keep-alive period;
+// - the last change raised throughput: take another step the same way;
+// - the last change lowered throughput: step back;
+// - no clear change: add a worker if tasks wait longer than the latency
+//   target, otherwise remove one.
+public class PoolSizeController implements Runnable
+{
+   //changes smaller than this are treated as noise
+   private static final double NOISE = 0.05;
+
+   private final CustomThreadPool pool;
+   private final long intervalMillis;
+   private final long latencyTargetNanos;
+
+   private long lastFinished;
+   private double lastThroughput;
+   private int lastStep;
+   private LatencyHistogram.Snapshot lastWait;
+
+   public PoolSizeController(CustomThreadPool pool)
+   {
+      this(pool, 200, TimeUnit.MILLISECONDS.toNanos(5));
+   }
+
+   public PoolSizeController(CustomThreadPool pool, long intervalMillis, long latencyTargetNanos)
+   {
+      this.pool = pool;
+      this.intervalMillis = intervalMillis;
+      this.latencyTargetNanos = latencyTargetNanos;
+   }
+
+   public void run()
+   {
+      PoolMetrics metrics = pool.getMetrics();
+      lastWait = metrics.queueWait.snapshot();
+      while (!pool.isShutdown())
+      {
+         try
+         {
+            TimeUnit.MILLISECONDS.sleep(intervalMillis);
+         } catch (InterruptedException e)
+         {
+            return;
+         }
+         tick(metrics);
+      }
+   }
+
+   void tick(PoolMetrics metrics)
+   {
+      long finished = metrics.getCompleted() + metrics.getFailed();
+      double throughput = (finished - lastFinished) * 1000.0 / intervalMillis;
+      LatencyHistogram.Snapshot wait = metrics.queueWait.snapshot();
+      long waitP90 = wait.minus(lastWait).percentile(90);
+      boolean backlog = pool.getQueueSize() > 0;
+
+      int step;
+      if (!backlog && waitP90 < latencyTargetNanos)
+      {
+         step = 0;
+      } else if (lastStep != 0 && throughput > lastThroughput * (1 + NOISE))
+      {
+         step = lastStep;
+      } else if (lastStep != 0 && throughput < lastThroughput * (1 - NOISE))
+      {
+         step = -lastStep;
+      } else
+      {
+         step = waitP90 > latencyTargetNanos ? 1 : -1;
+      }
+
+      int before = pool.getTargetSize();
+      pool.setTargetSize(before + step);
+      lastStep = pool.getTargetSize() - before;
+      lastThroughput = throughput;
+      lastFinished = finished;
+      lastWait = wait;
+   }
+}
@@ -0,0 +1,17 @@
+//A task that PriorityTaskQueue can order: lower priority values run first,
+//equal priorities run earliest deadline first, then in submission order.
+public interface Prioritized
+{
+   //no deadline
+   long NO_DEADLINE = Long.MAX_VALUE;
+
+   int getPriority();
+
+   //System.nanoTime() based; NO_DEADLINE if the task never expires
+   long getDeadlineNanos();
+
+   //Called instead of running the task when its deadline has passed
+   default void shed()
+   {
+   }
+}
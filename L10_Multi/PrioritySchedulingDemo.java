@@ -0,0 +1,98 @@
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Urgent requests behind bulk work: FIFO (LinkedBlockingQueue) against
+//PriorityTaskQueue. 2000 bulk tasks of ~1 ms are queued first, then 20
+//urgent ones; we measure how long the urgent ones wait. A third run adds
+//tasks with a 20 ms deadline, most of which get shed.
+//The last part measures concurrent submit throughput of the queue itself.
+public class PrioritySchedulingDemo
+{
+   public static void main(String[] args) throws InterruptedException
+   {
+      System.out.printf("FIFO:     urgent tasks waited %.1f ms on average%n",
+            urgentWait(new LinkedBlockingQueue<Runnable>(), false));
+      System.out.printf("Priority: urgent tasks waited %.1f ms on average%n",
+            urgentWait(new PriorityTaskQueue(), false));
+      PriorityTaskQueue q = new PriorityTaskQueue();
+      urgentWait(q, true);
+      System.out.printf("Deadline run: %d expired tasks shed%n", q.getShedCount());
+
+      int submitters = Math.max(2, Runtime.getRuntime().availableProcessors());
+      System.out.printf("Offer+poll, %d threads: 1 stripe %.2f Mops/s, %d stripes %.2f Mops/s%n",
+            submitters, offerPoll(new PriorityTaskQueue(1), submitters),
+            submitters, offerPoll(new PriorityTaskQueue(submitters), submitters));
+   }
+
+   static double urgentWait(BlockingQueue<Runnable> queue, boolean withDeadlines) throws InterruptedException
+   {
+      CustomThreadPool pool = new CustomThreadPool(2, queue);
+      Runnable bulk = () -> busy(1);
+      for (int i = 0; i < 2000; i++)
+      {
+         pool.execute(PriorityTask.of(PriorityTask.BULK, bulk));
+         if (withDeadlines && i % 10 == 0)
+         {
+            pool.execute(PriorityTask.withDeadline(PriorityTask.BULK, 20, TimeUnit.MILLISECONDS, bulk));
+         }
+      }
+      CountDownLatch urgentDone = new CountDownLatch(20);
+      AtomicLong waited = new AtomicLong();
+      for (int i = 0; i < 20; i++)
+      {
+         long queued = System.nanoTime();
+         pool.execute(PriorityTask.of(PriorityTask.URGENT, () -> {
+            waited.addAndGet(System.nanoTime() - queued);
+            urgentDone.countDown();
+         }));
+      }
+      urgentDone.await();
+      if (withDeadlines)
+      {
+         pool.shutdown(); //let the bulk work finish so deadlines can pass
+      } else
+      {
+         pool.shutdownNow();
+      }
+      pool.awaitTermination(1, TimeUnit.MINUTES);
+      return waited.get() / 20 / 1e6;
+   }
+
+   static void busy(long millis)
+   {
+      long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+      while (System.nanoTime() < end)
+      {
+         Thread.onSpinWait();
+      }
+   }
+
+   //each thread offers and polls 200000 tasks with random priorities
+   static double offerPoll(PriorityTaskQueue queue, int threads) throws InterruptedException
+   {
+      int ops = 200_000;
+      Runnable noop = () -> { };
+      Thread[] t = new Thread[threads];
+      long begin = System.nanoTime();
+      for (int i = 0; i < threads; i++)
+      {
+         int seed = i;
+         t[i] = new Thread(() -> {
+            for (int k = 0; k < ops; k++)
+            {
+               queue.offer(PriorityTask.of((k * 31 + seed) & 3, noop));
+               queue.poll();
+            }
+         });
+         t[i].start();
+      }
+      for (Thread th : t)
+      {
+         th.join();
+      }
+      return 2.0 * ops * threads / ((System.nanoTime() - begin) / 1000.0);
+   }
+}
@@ -0,0 +1,76 @@
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+//Wraps a Runnable with a priority and an optional deadline, for a
+//CustomThreadPool that uses a PriorityTaskQueue:
+//
+//   pool.execute(PriorityTask.of(PriorityTask.HIGH, task));
+//   pool.submit(PriorityTask.withDeadline(PriorityTask.NORMAL, 50, TimeUnit.MILLISECONDS, task));
+//
+//A task whose deadline has passed when a worker picks it up is shed:
+//it does not run, and a Future wrapping it is cancelled.
+public class PriorityTask implements Runnable, Prioritized
+{
+   public static final int URGENT = 0;
+   public static final int HIGH = 1;
+   public static final int NORMAL = 2;
+   public static final int BULK = 3;
+
+   private final int priority;
+   private final long deadlineNanos;
+   private final Runnable task;
+
+   public PriorityTask(int priority, long deadlineNanos, Runnable task)
+   {
+      if (task == null)
+      {
+         throw new NullPointerException("task");
+      }
+      this.priority = priority;
+      this.deadlineNanos = deadlineNanos;
+      this.task = task;
+   }
+
+   public static PriorityTask of(int priority, Runnable task)
+   {
+      return new PriorityTask(priority, NO_DEADLINE, task);
+   }
+
+   //the task must start within timeout from now, or it is shed
+   public static PriorityTask withDeadline(int priority, long timeout, TimeUnit unit, Runnable task)
+   {
+      return new PriorityTask(priority, System.nanoTime() + unit.toNanos(timeout), task);
+   }
+
+   //same priority and deadline as p, running task
+   static PriorityTask like(Prioritized p, Runnable task)
+   {
+      return new PriorityTask(p.getPriority(), p.getDeadlineNanos(), task);
+   }
+
+   public int getPriority()
+   {
+      return priority;
+   }
+
+   public long getDeadlineNanos()
+   {
+      return deadlineNanos;
+   }
+
+   public void run()
+   {
+      task.run();
+   }
+
+   public void shed()
+   {
+      if (task instanceof Future)
+      {
+         ((Future<?>) task).cancel(false);
+      } else if (task instanceof Prioritized)
+      {
+         ((Prioritized) task).shed();
+      }
+   }
+}
@@ -0,0 +1,314 @@
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+//Scheduling queue for CustomThreadPool: priority levels, earliest deadline
+//first within a level, FIFO for ties. Expired tasks are shed, not run.
+//
+//   CustomThreadPool pool = new CustomThreadPool(8, new PriorityTaskQueue());
+//
+//The queue is striped: it holds several binary heaps, each with its own
+//lock, and a submitter adds to a random one, so concurrent submitters
+//rarely contend. A taker looks at the head of every stripe and polls the
+//best one. offer and poll are O(log n) plus O(stripes).
+//Runnables that are not Prioritized get NORMAL priority and no deadline.
+public class PriorityTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable>
+{
+   private static final class Entry implements Comparable<Entry>
+   {
+      final Runnable task;
+      final int priority;
+      final long deadline;
+      final long seq;
+
+      Entry(Runnable task, long seq)
+      {
+         this.task = task;
+         this.seq = seq;
+         if (task instanceof Prioritized)
+         {
+            priority = ((Prioritized) task).getPriority();
+            deadline = ((Prioritized) task).getDeadlineNanos();
+         } else
+         {
+            priority = PriorityTask.NORMAL;
+            deadline = Prioritized.NO_DEADLINE;
+         }
+      }
+
+      boolean expired(long now)
+      {
+         //deadlines are nanoTime values, compare by difference
+         return deadline != Prioritized.NO_DEADLINE && now - deadline > 0;
+      }
+
+      public int compareTo(Entry o)
+      {
+         if (priority != o.priority)
+         {
+            return Integer.compare(priority, o.priority);
+         }
+         if (deadline != o.deadline)
+         {
+            if (deadline == Prioritized.NO_DEADLINE)
+            {
+               return 1;
+            }
+            if (o.deadline == Prioritized.NO_DEADLINE)
+            {
+               return -1;
+            }
+            return Long.signum(deadline - o.deadline);
+         }
+         return Long.compare(seq, o.seq);
+      }
+   }
+
+   private final PriorityBlockingQueue<Entry>[] stripes;
+   //one permit per queued task that no taker has claimed yet
+   private final Semaphore available = new Semaphore(0);
+   private final AtomicLong sequence = new AtomicLong();
+   private final LongAdder shed = new LongAdder();
+
+   public PriorityTaskQueue()
+   {
+      this(Math.max(2, Runtime.getRuntime().availableProcessors()));
+   }
+
+   @SuppressWarnings({ "unchecked", "rawtypes" })
+   public PriorityTaskQueue(int stripeCount)
+   {
+      if (stripeCount <= 0)
+      {
+         throw new IllegalArgumentException("stripeCount must be positive: " + stripeCount);
+      }
+      stripes = new PriorityBlockingQueue[stripeCount];
+      for (int i = 0; i < stripeCount; i++)
+      {
+         stripes[i] = new PriorityBlockingQueue<Entry>();
+      }
+   }
+
+   //tasks dropped because their deadline passed while queued
+   public long getShedCount()
+   {
+      return shed.sum();
+   }
+
+   public boolean offer(Runnable task)
+   {
+      if (task == null)
+      {
+         throw new NullPointerException("task");
+      }
+      stripes[ThreadLocalRandom.current().nextInt(stripes.length)]
+            .add(new Entry(task, sequence.getAndIncrement()));
+      available.release();
+      return true;
+   }
+
+   public void put(Runnable task)
+   {
+      offer(task);
+   }
+
+   public boolean offer(Runnable task, long timeout, TimeUnit unit)
+   {
+      return offer(task);
+   }
+
+   public Runnable take() throws InterruptedException
+   {
+      while (true)
+      {
+         available.acquire();
+         Runnable task = claim();
+         if (task != null)
+         {
+            return task;
+         }
+      }
+   }
+
+   public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException
+   {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      while (available.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+      {
+         Runnable task = claim();
+         if (task != null)
+         {
+            return task;
+         }
+      }
+      return null;
+   }
+
+   public Runnable poll()
+   {
+      while (available.tryAcquire())
+      {
+         Runnable task = claim();
+         if (task != null)
+         {
+            return task;
+         }
+      }
+      return null;
+   }
+
+   //Holding a permit: take the best head, or null if it had expired
+   private Runnable claim()
+   {
+      while (true)
+      {
+         PriorityBlockingQueue<Entry> best = null;
+         Entry bestHead = null;
+         for (PriorityBlockingQueue<Entry> stripe : stripes)
+         {
+            Entry head = stripe.peek();
+            if (head != null && (bestHead == null || head.compareTo(bestHead) < 0))
+            {
+               best = stripe;
+               bestHead = head;
+            }
+         }
+         if (best == null)
+         {
+            //the item behind our permit is not visible yet; look again
+            Thread.onSpinWait();
+            continue;
+         }
+         Entry e = best.poll();
+         if (e == null)
+         {
+            continue;
+         }
+         if (e.expired(System.nanoTime()))
+         {
+            shed.increment();
+            if (e.task instanceof Prioritized)
+            {
+               ((Prioritized) e.task).shed();
+            }
+            return null;
+         }
+         return e.task;
+      }
+   }
+
+   public Runnable peek()
+   {
+      Entry bestHead = null;
+      for (PriorityBlockingQueue<Entry> stripe : stripes)
+      {
+         Entry head = stripe.peek();
+         if (head != null && (bestHead == null || head.compareTo(bestHead) < 0))
+         {
+            bestHead = head;
+         }
+      }
+      return bestHead == null ? null : bestHead.task;
+   }
+
+   public boolean remove(Object o)
+   {
+      if (!available.tryAcquire())
+      {
+         return false;
+      }
+      //exactly one entry per permit: the same task may be queued twice
+      for (PriorityBlockingQueue<Entry> stripe : stripes)
+      {
+         for (Entry e : stripe)
+         {
+            if (e.task == o && stripe.remove(e))
+            {
+               return true;
+            }
+         }
+      }
+      available.release();
+      return false;
+   }
+
+   public int size()
+   {
+      int n = 0;
+      for (PriorityBlockingQueue<Entry> stripe : stripes)
+      {
+         n += stripe.size();
+      }
+      return n;
+   }
+
+   public int remainingCapacity()
+   {
+      return Integer.MAX_VALUE;
+   }
+
+   public int drainTo(Collection<? super Runnable> c)
+   {
+      return drainTo(c, Integer.MAX_VALUE);
+   }
+
+   //in scheduling order; expired tasks are shed on the way
+   public int drainTo(Collection<? super Runnable> c, int maxElements)
+   {
+      int n = 0;
+      Runnable task;
+      while (n < maxElements && (task = poll()) != null)
+      {
+         c.add(task);
+         n++;
+      }
+      return n;
+   }
+
+   //Weakly consistent snapshot, in no particular order
+   public Iterator<Runnable> iterator()
+   {
+      List<Runnable> snapshot = new ArrayList<Runnable>();
+      for (PriorityBlockingQueue<Entry> stripe : stripes)
+      {
+         for (Entry e : stripe)
+         {
+            snapshot.add(e.task);
+         }
+      }
+      Iterator<Runnable> it = snapshot.iterator();
+      return new Iterator<Runnable>()
+      {
+         private Runnable last;
+
+         public boolean hasNext()
+         {
+            return it.hasNext();
+         }
+
+         public Runnable next()
+         {
+            return last = it.next();
+         }
+
+         public void remove()
+         {
+            if (last == null)
+            {
+               throw new IllegalStateException();
+            }
+            PriorityTaskQueue.this.remove(last);
+            last = null;
+         }
+      };
+   }
+}
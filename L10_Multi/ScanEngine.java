@@ -0,0 +1,391 @@
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+//Scans several roots at once with separate limits for I/O and CPU work.
+//
+//ForkMain runs three FolderProcessors in one ForkJoinPool, so blocking
+//listFiles() calls hold the CPU-sized set of workers while the disk works.
+//Here directory listings run on a CustomThreadPool in VIRTUAL mode, whose
+//size caps how many listings are in flight (a virtual thread parks while it
+//waits for the disk; before Java 21 these are platform threads). The files
+//of each listed directory are then passed in one batch to the CPU pool,
+//which runs the per-file stage (matching, hashing, ...).
+//
+//Every listing task takes its directory from the next root in turn, so a
+//root with a huge tree cannot keep a small one waiting: with ioLimit
+//listings in flight each active root gets about ioLimit / roots of them.
+//Each root counts its own progress and completes on its own.
+public class ScanEngine implements AutoCloseable
+{
+   private static final int CPU_BATCH = 256;
+   //how long a listing task may find no queued directory before giving up
+   private static final long IDLE_LIMIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+   private final CustomThreadPool io;
+   private final ForkJoinPool cpu;
+   private final List<Root> roots = new CopyOnWriteArrayList<Root>();
+   private final AtomicInteger turn = new AtomicInteger();
+   private volatile boolean closed;
+
+   public ScanEngine(int ioLimit, ForkJoinPool cpu)
+   {
+      this.io = new CustomThreadPool(ioLimit, CustomThreadPool.Mode.VIRTUAL);
+      this.cpu = cpu;
+   }
+
+   //One root being scanned
+   public final class Root
+   {
+      private final Path path;
+      private final Predicate<Path> stage;
+      private final ConcurrentLinkedDeque<Path> pending = new ConcurrentLinkedDeque<Path>();
+      private final ConcurrentLinkedQueue<Path> results = new ConcurrentLinkedQueue<Path>();
+      private final ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<Throwable>();
+      //directories queued or being listed plus file batches on the CPU pool
+      private final AtomicInteger outstanding = new AtomicInteger();
+      private final LongAdder listed = new LongAdder(), files = new LongAdder(), matches = new LongAdder();
+      private final CountDownLatch done = new CountDownLatch(1);
+      private final long start = System.nanoTime();
+      private volatile long millis = -1;
+
+      Root(Path path, Predicate<Path> stage)
+      {
+         this.path = path;
+         this.stage = stage;
+      }
+
+      public Path getPath()
+      {
+         return path;
+      }
+
+      public boolean isDone()
+      {
+         return done.getCount() == 0;
+      }
+
+      public void await() throws InterruptedException
+      {
+         done.await();
+      }
+
+      //Files accepted by the stage so far; complete once isDone()
+      public List<Path> getResults()
+      {
+         return new ArrayList<Path>(results);
+      }
+
+      public long getMatches()
+      {
+         return matches.sum();
+      }
+
+      //Why getResults() may be incomplete: what the stage threw, and
+      //directories dropped because the engine stopped; empty if nothing was lost
+      public List<Throwable> getErrors()
+      {
+         return new ArrayList<Throwable>(errors);
+      }
+
+      @Override
+      public String toString()
+      {
+         return String.format("%s: %d dirs listed, %d pending, %d files, %d matches%s%s", path, listed.sum(),
+               pending.size(), files.sum(), matches.sum(), errors.isEmpty() ? "" : ", " + errors.size() + " errors",
+               millis < 0 ? "" : ", done in " + millis + " ms");
+      }
+
+      private void enqueue(Path dir)
+      {
+         outstanding.incrementAndGet();
+         pending.push(dir);
+         try
+         {
+            io.execute(ScanEngine.this::listNext);
+         } catch (RejectedExecutionException e)
+         {
+            //the I/O pool is stopped: nothing queued will be listed now
+            abandon(e);
+         }
+      }
+
+      //Drops every queued directory, counting each one as finished
+      private void abandon(Throwable reason)
+      {
+         errors.add(reason);
+         while (pending.poll() != null)
+         {
+            finished();
+         }
+      }
+
+      private void finished()
+      {
+         if (outstanding.decrementAndGet() == 0)
+         {
+            millis = (System.nanoTime() - start) / 1_000_000;
+            done.countDown();
+         }
+      }
+   }
+
+   //Starts scanning root; stage runs on the CPU pool for every regular file
+   public Root add(Path root, Predicate<Path> stage)
+   {
+      if (closed)
+      {
+         throw new IllegalStateException("engine is closed");
+      }
+      Root r = new Root(root, stage);
+      roots.add(r);
+      r.enqueue(root);
+      return r;
+   }
+
+   public List<Root> getRoots()
+   {
+      return new ArrayList<Root>(roots);
+   }
+
+   //One line per root
+   public String progress()
+   {
+      StringBuilder sb = new StringBuilder();
+      for (Root r : roots)
+      {
+         sb.append(r).append(System.lineSeparator());
+      }
+      return sb.toString();
+   }
+
+   //Waits for the running scans, then stops the I/O pool. If interrupted
+   //it stops the pool at once; the unfinished roots complete with an error.
+   @Override
+   public void close()
+   {
+      closed = true;
+      try
+      {
+         for (Root r : roots)
+         {
+            r.await();
+         }
+         io.shutdown();
+         io.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         io.shutdownNow();
+         RejectedExecutionException stopped = new RejectedExecutionException("engine closed during the scan");
+         for (Root r : roots)
+         {
+            if (!r.isDone())
+            {
+               r.abandon(stopped);
+            }
+         }
+      }
+   }
+
+   //One I/O task per queued directory; it lists whichever root's turn it is.
+   //
+   //Invariant: enqueue() pushes a directory before it submits the task for
+   //it, and every task takes exactly one directory, so there are never fewer
+   //queued directories than queued tasks and a round over the roots finds
+   //one (a miss only means another task won the race for it). Directories
+   //dropped by abandon() break this, which is fine once the pool is stopped;
+   //otherwise a task that keeps finding nothing fails loudly instead of
+   //spinning forever.
+   private void listNext()
+   {
+      long idleSince = 0;
+      while (true)
+      {
+         int n = roots.size();
+         for (int i = 0; i < n; i++)
+         {
+            Root r = roots.get(Math.floorMod(turn.getAndIncrement(), n));
+            Path dir = r.pending.poll();
+            if (dir != null)
+            {
+               list(r, dir);
+               return;
+            }
+         }
+         if (io.isShutdown())
+         {
+            return;
+         }
+         long now = System.nanoTime();
+         if (idleSince == 0)
+         {
+            idleSince = now;
+         } else if (now - idleSince > IDLE_LIMIT_NANOS)
+         {
+            throw new IllegalStateException("listing task found no queued directory");
+         }
+         Thread.onSpinWait();
+      }
+   }
+
+   private void list(Root r, Path dir)
+   {
+      List<Path> batch = new ArrayList<Path>();
+      try
+      {
+         listDirectory(r, dir, batch);
+         r.listed.increment();
+         r.files.add(batch.size());
+         if (!batch.isEmpty())
+         {
+            r.outstanding.incrementAndGet();
+            try
+            {
+               cpu.execute(new StageTask(r, batch, 0, batch.size()));
+            } catch (RejectedExecutionException e)
+            {
+               r.errors.add(e);
+               r.finished();
+            }
+         }
+      } finally
+      {
+         r.finished();
+      }
+   }
+
+   private void listDirectory(Root r, Path dir, List<Path> batch)
+   {
+      try
+      {
+         Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>()
+         {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+            {
+               if (attrs.isDirectory())
+               {
+                  r.enqueue(file);
+               } else if (attrs.isRegularFile())
+               {
+                  batch.add(file);
+               }
+               return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e)
+            {
+               return FileVisitResult.CONTINUE;
+            }
+         });
+      } catch (IOException e)
+      {
+         //unreadable directory: skipped, as FolderProcessor does
+      }
+   }
+
+   //Runs the root's stage over batch[from, to)
+   private static final class StageTask extends RecursiveAction
+   {
+      private static final long serialVersionUID = 1L;
+      private final Root root;
+      private final List<Path> batch;
+      private final int from, to;
+
+      StageTask(Root root, List<Path> batch, int from, int to)
+      {
+         this.root = root;
+         this.batch = batch;
+         this.from = from;
+         this.to = to;
+      }
+
+      @Override
+      protected void compute()
+      {
+         try
+         {
+            if (to - from > CPU_BATCH)
+            {
+               int mid = (from + to) >>> 1;
+               invokeAll(new StageTask(root, batch, from, mid), new StageTask(root, batch, mid, to));
+               return;
+            }
+            for (int i = from; i < to; i++)
+            {
+               Path file = batch.get(i);
+               try
+               {
+                  if (root.stage.test(file))
+                  {
+                     root.results.add(file);
+                     root.matches.increment();
+                  }
+               } catch (RuntimeException e)
+               {
+                  //one bad file must not cost the rest of the batch
+                  root.errors.add(new RuntimeException(file.toString(), e));
+               }
+            }
+         } finally
+         {
+            //only the task covering the whole batch reports it finished
+            if (from == 0 && to == batch.size())
+            {
+               root.finished();
+            }
+         }
+      }
+   }
+
+   //The ForkMain scan on this engine: java ScanEngine [ioLimit] [extension] [root...]
+   public static void main(String[] args) throws InterruptedException
+   {
+      int ioLimit = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+      String extension = args.length > 1 ? args[1] : "log";
+      String[] paths = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length)
+            : new String[] { "C:\\Windows", "C:\\Program Files", "C:\\Documents And Settings" };
+      ForkJoinPool cpu = new ForkJoinPool();
+      try (ScanEngine engine = new ScanEngine(ioLimit, cpu))
+      {
+         for (String p : paths)
+         {
+            engine.add(Paths.get(p), file -> file.getFileName().toString().endsWith(extension));
+         }
+         boolean all;
+         do
+         {
+            TimeUnit.SECONDS.sleep(1);
+            System.out.print(engine.progress());
+            all = true;
+            for (Root r : engine.getRoots())
+            {
+               all &= r.isDone();
+            }
+         } while (!all);
+      }
+      cpu.shutdown();
+   }
+}
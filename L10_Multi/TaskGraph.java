@@ -0,0 +1,353 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//A graph of dependent tasks (a DAG) run on a CustomThreadPool.
+//
+//   TaskGraph g = new TaskGraph();
+//   TaskGraph.Node load  = g.add("load", loadTask);
+//   TaskGraph.Node left  = g.add("left", leftTask, load);      //fan-out
+//   TaskGraph.Node right = g.add("right", rightTask, load);
+//   g.add("merge", mergeTask, left, right);                    //fan-in
+//   TaskGraph.Execution run = g.start(pool);
+//   run.await();
+//   System.out.println(run.report());
+//
+//Nobody waits inside a task: every node has a counter of unfinished
+//prerequisites, and the prerequisite that brings it to zero submits the
+//node to the pool. If a node fails, is cancelled or is rejected by the
+//pool, everything downstream of it is cancelled. Dependencies must be
+//added before the nodes that use them, so the graph cannot have cycles.
+public class TaskGraph
+{
+   public static final class Node
+   {
+      final int id;
+      final String name;
+      final Runnable task;
+      final List<Node> prerequisites;
+      final List<Node> dependents = new ArrayList<Node>();
+
+      Node(int id, String name, Runnable task, List<Node> prerequisites)
+      {
+         this.id = id;
+         this.name = name;
+         this.task = task;
+         this.prerequisites = prerequisites;
+      }
+
+      public String getName()
+      {
+         return name;
+      }
+   }
+
+   public enum State
+   {
+      PENDING, RUNNING, DONE, FAILED, CANCELLED
+   }
+
+   private final List<Node> nodes = new ArrayList<Node>();
+   //set by start(): a running execution walks the nodes' dependent lists
+   private boolean started;
+
+   public synchronized Node add(String name, Runnable task, Node... prerequisites)
+   {
+      if (task == null)
+      {
+         throw new NullPointerException("task");
+      }
+      if (started)
+      {
+         throw new IllegalStateException("graph already started; build a new TaskGraph");
+      }
+      for (Node p : prerequisites)
+      {
+         if (p.id >= nodes.size() || nodes.get(p.id) != p)
+         {
+            throw new IllegalArgumentException(p.name + " does not belong to this graph");
+         }
+      }
+      Node node = new Node(nodes.size(), name, task, List.of(prerequisites));
+      for (Node p : prerequisites)
+      {
+         p.dependents.add(node);
+      }
+      nodes.add(node);
+      return node;
+   }
+
+   //Submits every node without prerequisites; the rest follow as they become ready.
+   //The graph can be started again, but no longer changed.
+   public synchronized Execution start(CustomThreadPool pool)
+   {
+      started = true;
+      Execution run = new Execution(pool, new ArrayList<Node>(nodes));
+      run.begin();
+      return run;
+   }
+
+   public static final class Execution
+   {
+      private final CustomThreadPool pool;
+      private final List<Node> nodes;
+      private final AtomicIntegerArray remaining; //unfinished prerequisites
+      private final AtomicIntegerArray state;     //State ordinal
+      private final AtomicLongArray readyAt, startedAt, finishedAt;
+      private final AtomicReferenceArray<Throwable> failures;
+      private final CountDownLatch finished;
+      private final long begin = System.nanoTime();
+      private volatile long end;
+
+      Execution(CustomThreadPool pool, List<Node> nodes)
+      {
+         this.pool = pool;
+         this.nodes = nodes;
+         int n = nodes.size();
+         remaining = new AtomicIntegerArray(n);
+         state = new AtomicIntegerArray(n);
+         readyAt = new AtomicLongArray(n);
+         startedAt = new AtomicLongArray(n);
+         finishedAt = new AtomicLongArray(n);
+         failures = new AtomicReferenceArray<Throwable>(n);
+         finished = new CountDownLatch(n);
+         for (Node node : nodes)
+         {
+            remaining.set(node.id, node.prerequisites.size());
+         }
+      }
+
+      void begin()
+      {
+         if (nodes.isEmpty())
+         {
+            end = System.nanoTime();
+         }
+         for (Node node : nodes)
+         {
+            if (node.prerequisites.isEmpty())
+            {
+               submit(node);
+            }
+         }
+      }
+
+      private void submit(Node node)
+      {
+         readyAt.set(node.id, System.nanoTime());
+         try
+         {
+            pool.execute(() -> runNode(node));
+         } catch (RejectedExecutionException e)
+         {
+            //the pool is shut down: the node will never run
+            if (state.compareAndSet(node.id, State.PENDING.ordinal(), State.CANCELLED.ordinal()))
+            {
+               failures.set(node.id, e);
+               System.out.println("Task " + node.name + " rejected: " + e.getMessage());
+               nodeFinished();
+            }
+            cancelDownstream(node);
+         }
+      }
+
+      private void runNode(Node node)
+      {
+         //a node cancelled while it sat in the pool's queue is skipped
+         if (!state.compareAndSet(node.id, State.PENDING.ordinal(), State.RUNNING.ordinal()))
+         {
+            return;
+         }
+         startedAt.set(node.id, System.nanoTime());
+         boolean ok = false;
+         try
+         {
+            node.task.run();
+            ok = true;
+         } catch (Throwable e)
+         {
+            failures.set(node.id, e);
+            System.out.println("Task " + node.name + " failed: " + e);
+            if (e instanceof Error)
+            {
+               throw (Error) e; //recorded, but an OutOfMemoryError is not ours to swallow
+            }
+         } finally
+         {
+            //whatever the task threw, the node is finished and await() must see it
+            finishedAt.set(node.id, System.nanoTime());
+            state.set(node.id, (ok ? State.DONE : State.FAILED).ordinal());
+            try
+            {
+               if (ok)
+               {
+                  for (Node d : node.dependents)
+                  {
+                     if (remaining.decrementAndGet(d.id) == 0)
+                     {
+                        submit(d);
+                     }
+                  }
+               } else
+               {
+                  cancelDownstream(node);
+               }
+            } finally
+            {
+               nodeFinished();
+            }
+         }
+      }
+
+      //Cancels node (if it has not started) and everything that depends on it
+      public void cancel(Node node)
+      {
+         if (state.compareAndSet(node.id, State.PENDING.ordinal(), State.CANCELLED.ordinal()))
+         {
+            nodeFinished();
+         }
+         cancelDownstream(node);
+      }
+
+      //Cancels every node that has not started yet
+      public void cancelAll()
+      {
+         for (Node node : nodes)
+         {
+            cancel(node);
+         }
+      }
+
+      //Iterative, so a long chain cannot overflow the stack
+      private void cancelDownstream(Node node)
+      {
+         ArrayDeque<Node> todo = new ArrayDeque<Node>(node.dependents);
+         while (!todo.isEmpty())
+         {
+            Node d = todo.pop();
+            if (state.compareAndSet(d.id, State.PENDING.ordinal(), State.CANCELLED.ordinal()))
+            {
+               nodeFinished();
+               todo.addAll(d.dependents);
+            }
+         }
+      }
+
+      private void nodeFinished()
+      {
+         finished.countDown();
+         if (finished.getCount() == 0)
+         {
+            end = System.nanoTime();
+         }
+      }
+
+      public void await() throws InterruptedException
+      {
+         finished.await();
+      }
+
+      public boolean await(long timeout, TimeUnit unit) throws InterruptedException
+      {
+         return finished.await(timeout, unit);
+      }
+
+      public boolean isDone()
+      {
+         return finished.getCount() == 0;
+      }
+
+      public State getState(Node node)
+      {
+         return State.values()[state.get(node.id)];
+      }
+
+      //What a FAILED node threw, the rejection for a node the pool would not
+      //take, otherwise null
+      public Throwable getFailure(Node node)
+      {
+         return failures.get(node.id);
+      }
+
+      //Nodes of the longest chain of actually executed work, first to last.
+      //Each node's earliest finish is its own run time plus the latest
+      //earliest finish of its prerequisites.
+      public List<Node> criticalPath()
+      {
+         int n = nodes.size();
+         long[] chain = new long[n];
+         int[] via = new int[n];
+         int last = -1;
+         for (Node node : nodes) //insertion order is a topological order
+         {
+            long best = 0;
+            via[node.id] = -1;
+            for (Node p : node.prerequisites)
+            {
+               if (chain[p.id] > best)
+               {
+                  best = chain[p.id];
+                  via[node.id] = p.id;
+               }
+            }
+            chain[node.id] = best + runNanos(node);
+            if (last < 0 || chain[node.id] > chain[last])
+            {
+               last = node.id;
+            }
+         }
+         List<Node> path = new ArrayList<Node>();
+         for (int i = last; i >= 0; i = via[i])
+         {
+            path.add(nodes.get(i));
+         }
+         Collections.reverse(path);
+         return path;
+      }
+
+      private long runNanos(Node node)
+      {
+         int s = state.get(node.id);
+         if (s != State.DONE.ordinal() && s != State.FAILED.ordinal())
+         {
+            return 0;
+         }
+         return finishedAt.get(node.id) - startedAt.get(node.id);
+      }
+
+      //Per-node queue wait and run time, plus the critical path
+      public String report()
+      {
+         StringBuilder sb = new StringBuilder();
+         sb.append(String.format("%-16s %-10s %12s %12s%n", "node", "state", "wait ms", "run ms"));
+         for (Node node : nodes)
+         {
+            State s = getState(node);
+            boolean ran = s == State.DONE || s == State.FAILED;
+            sb.append(String.format("%-16s %-10s %12s %12s%n", node.name, s,
+                  ran ? String.format("%.2f", (startedAt.get(node.id) - readyAt.get(node.id)) / 1e6) : "-",
+                  ran ? String.format("%.2f", runNanos(node) / 1e6) : "-"));
+         }
+         long pathNanos = 0;
+         StringBuilder names = new StringBuilder();
+         for (Node node : criticalPath())
+         {
+            pathNanos += runNanos(node);
+            names.append(names.length() == 0 ? "" : " -> ").append(node.name);
+         }
+         sb.append(String.format("Critical path: %s (%.2f ms of work)%n", names, pathNanos / 1e6));
+         if (end != 0)
+         {
+            sb.append(String.format("Wall time: %.2f ms%n", (end - begin) / 1e6));
+         }
+         return sb.toString();
+      }
+   }
+}
@@ -0,0 +1,46 @@
+import java.util.concurrent.TimeUnit;
+
+//A small pipeline as a TaskGraph: load, three parallel transforms (fan-out),
+//merge (fan-in), then two outputs. One run completes normally; in the second
+//one a transform fails and its downstream nodes are cancelled.
+public class TaskGraphDemo
+{
+   public static void main(String[] args) throws InterruptedException
+   {
+      CustomThreadPool pool = new CustomThreadPool(4);
+      for (int run = 1; run <= 2; run++)
+      {
+         boolean fail = run == 2;
+         TaskGraph g = new TaskGraph();
+         TaskGraph.Node load = g.add("load", work(20));
+         TaskGraph.Node a = g.add("transform-a", work(30), load);
+         TaskGraph.Node b = g.add("transform-b", fail ? () -> {
+            throw new IllegalStateException("bad input");
+         } : work(60), load);
+         TaskGraph.Node c = g.add("transform-c", work(10), load);
+         TaskGraph.Node merge = g.add("merge", work(15), a, b, c);
+         g.add("write-db", work(25), merge);
+         g.add("write-report", work(5), merge);
+
+         TaskGraph.Execution execution = g.start(pool);
+         execution.await();
+         System.out.println("Run " + run + ":");
+         System.out.println(execution.report());
+      }
+      pool.shutdown();
+      pool.awaitTermination(1, TimeUnit.MINUTES);
+   }
+
+   static Runnable work(long millis)
+   {
+      return () -> {
+         try
+         {
+            TimeUnit.MILLISECONDS.sleep(millis);
+         } catch (InterruptedException e)
+         {
+            System.out.println("InterruptedException caught");
+         }
+      };
+   }
+}
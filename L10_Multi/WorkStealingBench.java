@@ -0,0 +1,115 @@
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Recursive FolderProcessor-style workload on CustomThreadPool in
+//SHARED_QUEUE and WORK_STEALING mode. Every node task submits one task per
+//child from inside the pool, like FolderProcessor forks one per subfolder.
+//
+//java WorkStealingBench [threads] [folder]
+//Without a folder a synthetic tree (fan-out 8, depth 7, ~2.4M nodes) is used.
+public class WorkStealingBench
+{
+   static final int FAN_OUT = 8;
+   static final int DEPTH = 7;
+
+   public static void main(String[] args) throws InterruptedException
+   {
+      int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+      File root = args.length > 1 ? new File(args[1]) : null;
+
+      for (int pass = 0; pass < 3; pass++) //the first pass is warmup
+      {
+         for (CustomThreadPool.Mode mode : CustomThreadPool.Mode.values())
+         {
+            CustomThreadPool pool = new CustomThreadPool(threads, mode);
+            long begin = System.nanoTime();
+            long nodes = root == null ? runTree(pool) : runFolder(pool, root);
+            long elapsed = System.nanoTime() - begin;
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+            if (pass > 0)
+            {
+               System.out.printf("%-14s %10d nodes %10.1f ms%n", mode, nodes, elapsed / 1e6);
+            }
+         }
+      }
+   }
+
+   //Counts outstanding tasks; the last one to finish opens the latch
+   static class Tracker
+   {
+      final AtomicInteger pending = new AtomicInteger(1);
+      final AtomicLong visited = new AtomicLong();
+      final CountDownLatch done = new CountDownLatch(1);
+
+      void finished()
+      {
+         if (pending.decrementAndGet() == 0)
+         {
+            done.countDown();
+         }
+      }
+   }
+
+   static long runTree(CustomThreadPool pool) throws InterruptedException
+   {
+      Tracker t = new Tracker();
+      pool.execute(() -> node(pool, t, 0, 0));
+      t.done.await();
+      return t.visited.get();
+   }
+
+   static void node(CustomThreadPool pool, Tracker t, int depth, long id)
+   {
+      t.visited.incrementAndGet();
+      //a little work per node, like matching file names
+      long h = id;
+      for (int i = 0; i < 64; i++)
+      {
+         h = h * 31 + i;
+      }
+      if (h == 42)
+      {
+         System.out.println("unlikely");
+      }
+      if (depth < DEPTH)
+      {
+         t.pending.addAndGet(FAN_OUT);
+         for (int i = 0; i < FAN_OUT; i++)
+         {
+            long child = id * FAN_OUT + i;
+            pool.execute(() -> node(pool, t, depth + 1, child));
+         }
+      }
+      t.finished();
+   }
+
+   static long runFolder(CustomThreadPool pool, File root) throws InterruptedException
+   {
+      Tracker t = new Tracker();
+      pool.execute(() -> folder(pool, t, root));
+      t.done.await();
+      return t.visited.get();
+   }
+
+   static void folder(CustomThreadPool pool, Tracker t, File dir)
+   {
+      File[] content = dir.listFiles();
+      if (content != null)
+      {
+         for (File f : content)
+         {
+            t.visited.incrementAndGet();
+            if (f.isDirectory())
+            {
+               t.pending.incrementAndGet();
+               pool.execute(() -> folder(pool, t, f));
+            }
+         }
+      }
+      t.finished();
+   }
+}